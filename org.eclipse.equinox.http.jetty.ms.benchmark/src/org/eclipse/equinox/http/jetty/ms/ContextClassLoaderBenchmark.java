@@ -0,0 +1,115 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.eclipse.equinox.http.servlet.HttpServiceServlet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link Activator.InternalHttpServiceServlet#service}, which sets the thread context class
+ * loader around every call into the Http Service servlet, against calling that servlet directly.
+ * The servlet is a stub, since the Http Service servlet can't serve before its runtime is up; the
+ * internal servlet is set up as the server sets it up without virtual threads and route latencies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContextClassLoaderBenchmark {
+
+    private final ClassLoader contextLoader =
+            new URLClassLoader(new URL[0], ContextClassLoaderBenchmark.class.getClassLoader());
+
+    private final Stub stub = new Stub();
+
+    private final Activator.InternalHttpServiceServlet servlet =
+            new Activator.InternalHttpServiceServlet(stub);
+
+    private final ServletRequest request = stub(ServletRequest.class);
+
+    private final ServletResponse response = stub(ServletResponse.class);
+
+    @Setup
+    public void setup() throws ServletException {
+        final ServletContext context =
+                (ServletContext)
+                        Proxy.newProxyInstance(
+                                ContextClassLoaderBenchmark.class.getClassLoader(),
+                                new Class<?>[] {ServletContext.class},
+                                (proxy, method, args) ->
+                                        "getAttribute".equals(method.getName()) // $NON-NLS-1$
+                                                        && Activator.INTERNAL_CONTEXT_CLASSLOADER
+                                                                .equals(args[0])
+                                                ? contextLoader
+                                                : null);
+        servlet.init(
+                (ServletConfig)
+                        Proxy.newProxyInstance(
+                                ContextClassLoaderBenchmark.class.getClassLoader(),
+                                new Class<?>[] {ServletConfig.class},
+                                (proxy, method, args) ->
+                                        "getServletContext" // $NON-NLS-1$
+                                                        .equals(method.getName())
+                                                ? context
+                                                : null));
+    }
+
+    @Benchmark
+    public ServletRequest direct() {
+        stub.service(request, response);
+        return stub.last;
+    }
+
+    @Benchmark
+    public ServletRequest swapped() throws Exception {
+        servlet.service(request, response);
+        return stub.last;
+    }
+
+    /** Returns an instance of {@code type} that the stub servlet passes around without a call. */
+    private static <T> T stub(Class<T> type) {
+        return type.cast(
+                Proxy.newProxyInstance(
+                        ContextClassLoaderBenchmark.class.getClassLoader(),
+                        new Class<?>[] {type},
+                        (proxy, method, args) -> null));
+    }
+
+    /** Stands in for the Http Service servlet; it only takes the request. */
+    public static class Stub extends HttpServiceServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        ServletRequest last;
+
+        @Override
+        public void init(ServletConfig config) {}
+
+        @Override
+        @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+        public void service(ServletRequest req, ServletResponse res) {
+            last = req;
+        }
+    }
+}
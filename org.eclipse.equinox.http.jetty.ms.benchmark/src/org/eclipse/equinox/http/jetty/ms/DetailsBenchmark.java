@@ -0,0 +1,99 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of reading configuration through {@link Details}, both for values given as strings, as file
+ * install does, and for typed values, as Configuration Admin clients usually do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetailsBenchmark {
+
+    private final Dictionary<String, Object> strings = new Hashtable<>();
+
+    private final Dictionary<String, Object> typed = new Hashtable<>();
+
+    public DetailsBenchmark() {
+        strings.put(JettyConstants.HTTP_PORT, "8080"); // $NON-NLS-1$
+        strings.put(JettyConstants.HTTP_ENABLED, "true"); // $NON-NLS-1$
+        strings.put(JettyConstants.HTTP_IDLETIMEOUT, "30000"); // $NON-NLS-1$
+        strings.put(JettyConstants.HTTP_HOST, "localhost"); // $NON-NLS-1$
+        strings.put(
+                JettyConstants.COMPRESSION_MIMETYPES,
+                "text/html, text/plain, application/json"); // $NON-NLS-1$
+        typed.put(JettyConstants.HTTP_PORT, 8080);
+        typed.put(JettyConstants.HTTP_ENABLED, Boolean.TRUE);
+        typed.put(JettyConstants.HTTP_IDLETIMEOUT, 30000L);
+        typed.put(JettyConstants.HTTP_HOST, "localhost"); // $NON-NLS-1$
+        typed.put(
+                JettyConstants.COMPRESSION_MIMETYPES,
+                new String[] {"text/html", "text/plain", "application/json"}); // $NON-NLS-1$
+    }
+
+    @Benchmark
+    public int intFromString() {
+        return Details.getInt(strings, JettyConstants.HTTP_PORT, 80);
+    }
+
+    @Benchmark
+    public int intTyped() {
+        return Details.getInt(typed, JettyConstants.HTTP_PORT, 80);
+    }
+
+    @Benchmark
+    public int intMissing() {
+        return Details.getInt(typed, JettyConstants.HTTP_MAXTHREADS, 200);
+    }
+
+    @Benchmark
+    public long longFromString() {
+        return Details.getLong(strings, JettyConstants.HTTP_IDLETIMEOUT, -1);
+    }
+
+    @Benchmark
+    public long longTyped() {
+        return Details.getLong(typed, JettyConstants.HTTP_IDLETIMEOUT, -1);
+    }
+
+    @Benchmark
+    public boolean booleanFromString() {
+        return Details.getBoolean(strings, JettyConstants.HTTP_ENABLED, false);
+    }
+
+    @Benchmark
+    public boolean booleanTyped() {
+        return Details.getBoolean(typed, JettyConstants.HTTP_ENABLED, false);
+    }
+
+    @Benchmark
+    public String string() {
+        return Details.getString(strings, JettyConstants.HTTP_HOST, null);
+    }
+
+    @Benchmark
+    public String[] stringsFromString() {
+        return Details.getStrings(strings, JettyConstants.COMPRESSION_MIMETYPES, null);
+    }
+
+    @Benchmark
+    public String[] stringsTyped() {
+        return Details.getStrings(typed, JettyConstants.COMPRESSION_MIMETYPES, null);
+    }
+}
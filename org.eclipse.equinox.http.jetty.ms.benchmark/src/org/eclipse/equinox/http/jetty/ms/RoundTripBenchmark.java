@@ -0,0 +1,196 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Request round trips over a kept-alive connection to a {@link JettyServer} started in process,
+ * through the connector and the whole handler chain of the servlet context. The Http Service
+ * servlet needs a running framework, so the request is for a small static resource served by the
+ * container; the overhead of the Http Service wrapper is measured on its own by the other
+ * benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    private static final String PID = "org.eclipse.equinox.http.jetty.ms.benchmark"; // $NON-NLS-1$
+
+    // Relative to the project directory, which is where the jmh task runs.
+    private static final String KEYSTORE =
+            "../org.foo.hello.world/etc/jetty_key_store.pfx"; // $NON-NLS-1$
+
+    @Param({"http", "https"})
+    public String scheme;
+
+    private File data;
+
+    private JettyServer server;
+
+    private URL url;
+
+    private SSLSocketFactory socketFactory;
+
+    private final byte[] buffer = new byte[8192];
+
+    @Setup
+    public void start() throws Exception {
+        data = Files.createTempDirectory("jmh").toFile(); // $NON-NLS-1$
+        final File www = new File(data, "www"); // $NON-NLS-1$
+        www.mkdir();
+        Files.write(
+                new File(www, "index.html").toPath(), // $NON-NLS-1$
+                "<html><body>round trip</body></html>\n" // $NON-NLS-1$
+                        .getBytes(StandardCharsets.US_ASCII));
+        final int port = freePort();
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(Constants.SERVICE_PID, PID);
+        properties.put(JettyConstants.HTTP_HOST, "localhost"); // $NON-NLS-1$
+        properties.put(JettyConstants.STATIC_RESOURCES, "/static=" + www); // $NON-NLS-1$
+        if ("https".equals(scheme)) { // $NON-NLS-1$
+            properties.put(JettyConstants.HTTP_ENABLED, Boolean.FALSE);
+            properties.put(JettyConstants.HTTPS_ENABLED, Boolean.TRUE);
+            properties.put(JettyConstants.HTTPS_HOST, "localhost"); // $NON-NLS-1$
+            properties.put(JettyConstants.HTTPS_PORT, port);
+            properties.put(JettyConstants.SSL_KEYSTORE_PATH, KEYSTORE);
+            properties.put(JettyConstants.SSL_KEYSTORE_PASSWORD, "changeit"); // $NON-NLS-1$
+            socketFactory = trustAll();
+        } else {
+            properties.put(JettyConstants.HTTP_PORT, port);
+        }
+        server = new JettyServer(context(data), PID, null);
+        server.updated(properties);
+        url = new URL(scheme, "localhost", port, "/static/index.html"); // $NON-NLS-1$
+    }
+
+    @TearDown
+    public void stop() throws Exception {
+        server.stop();
+        server = null;
+        delete(data);
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
+            ((HttpsURLConnection) connection).setHostnameVerifier((host, session) -> true);
+        }
+        final int status = connection.getResponseCode();
+        // Read to the end, so that the connection goes back to the keep-alive cache.
+        try (InputStream in =
+                status < HttpURLConnection.HTTP_BAD_REQUEST
+                        ? connection.getInputStream()
+                        : connection.getErrorStream()) {
+            if (in != null) {
+                while (in.read(buffer) != -1) {
+                    // Drain.
+                }
+            }
+        }
+        return status;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static SSLSocketFactory trustAll() throws GeneralSecurityException {
+        final SSLContext context = SSLContext.getInstance("TLS"); // $NON-NLS-1$
+        context.init(
+                null,
+                new TrustManager[] {
+                    new X509TrustManager() {
+                        @Override
+                        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                            // Self-signed test certificate.
+                        }
+
+                        @Override
+                        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                            // Self-signed test certificate.
+                        }
+
+                        @Override
+                        public X509Certificate[] getAcceptedIssuers() {
+                            return new X509Certificate[0];
+                        }
+                    }
+                },
+                null);
+        return context.getSocketFactory();
+    }
+
+    /** The little of a bundle context that the server uses outside a framework. */
+    static BundleContext context(File data) {
+        final ClassLoader loader = RoundTripBenchmark.class.getClassLoader();
+        return (BundleContext)
+                Proxy.newProxyInstance(
+                        loader,
+                        new Class<?>[] {BundleContext.class},
+                        (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "getDataFile": // $NON-NLS-1$
+                                    return new File(data, (String) args[0]);
+                                case "registerService": // $NON-NLS-1$
+                                    return Proxy.newProxyInstance(
+                                            loader,
+                                            new Class<?>[] {ServiceRegistration.class},
+                                            (p, m, a) -> null);
+                                default:
+                                    return null;
+                            }
+                        });
+    }
+
+    static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,107 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the session callbacks of {@link Activator.InternalHttpServiceServlet}, which call {@code
+ * sessionDestroyed(String)} and {@code sessionIdChanged(String)} of the Http Service servlet
+ * through invokers bound once, against the {@link Method#invoke} they replace. The target stands in
+ * for the servlet, which can't take callbacks before the Http Service runtime is up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionCallbackBenchmark {
+
+    private final ClassLoader contextLoader =
+            new URLClassLoader(new URL[0], SessionCallbackBenchmark.class.getClassLoader());
+
+    private final Target target = new Target();
+
+    private Method sessionDestroyed;
+
+    private final Consumer<String> invoker = id -> target.sessionDestroyed(id);
+
+    private String sessionId = "node0abcdefghijklmnop"; // $NON-NLS-1$
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        sessionDestroyed =
+                Target.class.getMethod(
+                        "sessionDestroyed", new Class<?>[] {String.class}); // $NON-NLS-1$
+    }
+
+    @Benchmark
+    public String direct() {
+        target.sessionDestroyed(sessionId);
+        return target.last;
+    }
+
+    @Benchmark
+    public String reflective() throws IllegalAccessException, InvocationTargetException {
+        sessionDestroyed.invoke(target, sessionId);
+        return target.last;
+    }
+
+    /** The reflective call with the context class loader set, as the servlet used to do. */
+    @Benchmark
+    public String reflectiveInContext() {
+        Thread thread = Thread.currentThread();
+        ClassLoader current = thread.getContextClassLoader();
+        thread.setContextClassLoader(contextLoader);
+        try {
+            sessionDestroyed.invoke(target, sessionId);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            // not likely
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            thread.setContextClassLoader(current);
+        }
+        return target.last;
+    }
+
+    @Benchmark
+    public String bound() {
+        invoker.accept(sessionId);
+        return target.last;
+    }
+
+    @Benchmark
+    public String boundInContext() {
+        Activator.InternalHttpServiceServlet.callInContext(contextLoader, invoker, sessionId);
+        return target.last;
+    }
+
+    public static class Target {
+
+        String last;
+
+        public void sessionDestroyed(String id) {
+            last = id;
+        }
+
+        public void sessionIdChanged(String oldId) {
+            last = oldId;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.session.Session;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What a request costs the session stores, built from the session.* settings the way the server
+ * builds them: getting the session, touching it, and completing it, which saves it. The memory
+ * store is the default; the jdbc store uses an in-memory H2 database, so the numbers leave out
+ * the network but include reading and writing the table, which the jdbc defaults do on every
+ * request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionStoreBenchmark {
+
+    private static final String PID = "org.eclipse.equinox.http.jetty.ms.benchmark"; // $NON-NLS-1$
+
+    private static final String ID = "benchmark"; // $NON-NLS-1$
+
+    @Param({SessionStores.MEMORY, SessionStores.FILE, SessionStores.JDBC})
+    public String store;
+
+    private File data;
+
+    private Server server;
+
+    private SessionHandler handler;
+
+    private int counter;
+
+    @Setup
+    public void start() throws Exception {
+        data = Files.createTempDirectory("jmh").toFile(); // $NON-NLS-1$
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(JettyConstants.SESSION_STORE, store);
+        properties.put(
+                JettyConstants.SESSION_JDBC_URL,
+                "jdbc:h2:mem:sessions;DB_CLOSE_DELAY=-1"); // $NON-NLS-1$
+        handler = new SessionHandler();
+        handler.setSessionCache(
+                SessionStores.createSessionCache(
+                        RoundTripBenchmark.context(data), PID, properties, handler));
+        final ServletContextHandler context = new ServletContextHandler();
+        context.setSessionHandler(handler);
+        server = new Server();
+        server.setHandler(context);
+        server.start();
+
+        final SessionCache cache = handler.getSessionCache();
+        final Session session = cache.newSession(null, ID, System.currentTimeMillis(), -1);
+        cache.add(ID, session);
+        handler.complete(session);
+    }
+
+    @TearDown
+    public void stop() throws Exception {
+        server.stop();
+        server = null;
+        RoundTripBenchmark.delete(data);
+    }
+
+    @Benchmark
+    public Session read() {
+        final Session session = handler.getSession(ID);
+        handler.access(session, false);
+        handler.complete(session);
+        return session;
+    }
+
+    @Benchmark
+    public Session write() {
+        final Session session = handler.getSession(ID);
+        handler.access(session, false);
+        session.setAttribute("counter", ++counter); // $NON-NLS-1$
+        handler.complete(session);
+        return session;
+    }
+}
@@ -0,0 +1,171 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TLS with each security provider {@code ssl.provider} can select, on the SSLEngines of a client
+ * and a server that exchange their records in memory, so that the network is out of the
+ * measurement. Both ends use the provider. A handshake is a full one, without session resumption;
+ * a transfer encrypts 16 KiB, one record, on the client and decrypts it on the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TlsBenchmark {
+
+    // Relative to the project directory, which is where the jmh task runs.
+    private static final String KEYSTORE =
+            "../org.foo.hello.world/etc/jetty_key_store.pfx"; // $NON-NLS-1$
+
+    private static final int RECORD_SIZE = 16384;
+
+    // More than the handshake leaves in flight in either direction.
+    private static final int NETWORK_BUFFER_SIZE = 1 << 18;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    @Param({SslProviders.JDK, SslProviders.CONSCRYPT})
+    public String provider;
+
+    private SslContextFactory.Server serverFactory;
+
+    private SslContextFactory.Client clientFactory;
+
+    private final ByteBuffer toServer = ByteBuffer.allocate(NETWORK_BUFFER_SIZE);
+
+    private final ByteBuffer toClient = ByteBuffer.allocate(NETWORK_BUFFER_SIZE);
+
+    private final ByteBuffer received = ByteBuffer.allocate(NETWORK_BUFFER_SIZE);
+
+    private final ByteBuffer payload = ByteBuffer.allocate(RECORD_SIZE);
+
+    private SSLEngine client;
+
+    private SSLEngine server;
+
+    @Setup
+    public void start() throws Exception {
+        final String selected = SslProviders.select(new String[] {provider}, "TLS"); // $NON-NLS-1$
+        if (!provider.equals(selected)) {
+            throw new IllegalStateException(provider + " is not available"); // $NON-NLS-1$
+        }
+        serverFactory = new SslContextFactory.Server();
+        serverFactory.setProvider(selected);
+        serverFactory.setKeyStorePath(KEYSTORE);
+        serverFactory.setKeyStorePassword("changeit"); // $NON-NLS-1$
+        serverFactory.start();
+        clientFactory = new SslContextFactory.Client(true);
+        clientFactory.setProvider(selected);
+        clientFactory.start();
+
+        // The connection the transfers go over.
+        client = newSSLEngine(clientFactory, true);
+        server = newSSLEngine(serverFactory, false);
+        handshake(client, server);
+    }
+
+    @TearDown
+    public void stop() throws Exception {
+        clientFactory.stop();
+        serverFactory.stop();
+    }
+
+    @Benchmark
+    public SSLEngine fullHandshake() throws SSLException {
+        final SSLEngine clientEngine = newSSLEngine(clientFactory, true);
+        final SSLEngine serverEngine = newSSLEngine(serverFactory, false);
+        handshake(clientEngine, serverEngine);
+        return serverEngine;
+    }
+
+    @Benchmark
+    public int transfer() throws SSLException {
+        payload.clear();
+        toServer.clear();
+        while (payload.hasRemaining()) {
+            check(client.wrap(payload, toServer));
+        }
+        toServer.flip();
+        received.clear();
+        while (toServer.hasRemaining()) {
+            check(server.unwrap(toServer, received));
+        }
+        return received.position();
+    }
+
+    /** Returns an engine set up the way a connector sets up the engine of a new connection. */
+    private static SSLEngine newSSLEngine(SslContextFactory factory, boolean clientMode) {
+        final SSLEngine engine = factory.newSSLEngine();
+        engine.setUseClientMode(clientMode);
+        factory.customize(engine);
+        return engine;
+    }
+
+    private void handshake(SSLEngine clientEngine, SSLEngine serverEngine) throws SSLException {
+        toServer.clear();
+        toClient.clear();
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+        for (int round = 0; handshaking(clientEngine) || handshaking(serverEngine); round++) {
+            if (round == 100) {
+                throw new SSLException("The handshake does not complete"); // $NON-NLS-1$
+            }
+            step(clientEngine, toClient, toServer);
+            step(serverEngine, toServer, toClient);
+        }
+    }
+
+    private static boolean handshaking(SSLEngine engine) {
+        return engine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
+    }
+
+    /** Lets an engine take its next handshake step, reading from in and writing to out. */
+    private void step(SSLEngine engine, ByteBuffer in, ByteBuffer out) throws SSLException {
+        switch (engine.getHandshakeStatus()) {
+            case NEED_WRAP:
+                check(engine.wrap(EMPTY, out));
+                break;
+            case NEED_UNWRAP:
+                in.flip();
+                received.clear();
+                engine.unwrap(in, received);
+                in.compact();
+                break;
+            case NEED_TASK:
+                for (Runnable task; (task = engine.getDelegatedTask()) != null; ) {
+                    task.run();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void check(SSLEngineResult result) throws SSLException {
+        if (result.getStatus() != SSLEngineResult.Status.OK) {
+            throw new SSLException("Unexpected " + result); // $NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Authentication;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.DateCache;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * Request log in NCSA or JSON lines format. The request thread only copies the fields out of the
+ * request and offers them to a {@link RingBuffer}; if the buffer is full the record is dropped and
+ * counted. A writer thread formats the records into buffers it reuses and writes them in batches
+ * through a {@link FileChannel}, rotating the file by size and time.
+ */
+@ManagedObject("Access log")
+class AccessLog extends AbstractLifeCycle implements RequestLog {
+
+    private static final Logger LOG = Log.getLogger(AccessLog.class);
+
+    static final String FORMAT_NCSA = "ncsa"; // $NON-NLS-1$
+
+    static final String FORMAT_JSON = "json"; // $NON-NLS-1$
+
+    static final String PERIOD_NONE = "none"; // $NON-NLS-1$
+
+    static final String PERIOD_HOURLY = "hourly"; // $NON-NLS-1$
+
+    static final String PERIOD_DAILY = "daily"; // $NON-NLS-1$
+
+    /** The NCSA combined format. */
+    static final String[] DEFAULT_FIELDS = {
+        "remote", "user", "time", "request", "status", "bytes", "referer", "agent" // $NON-NLS-1$
+    };
+
+    private static final int BATCH_SIZE = 512;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray(); // $NON-NLS-1$
+
+    enum Field {
+        REMOTE,
+        USER,
+        TIME,
+        REQUEST,
+        METHOD,
+        URI,
+        PROTOCOL,
+        HOST,
+        STATUS,
+        BYTES,
+        DURATION,
+        REFERER,
+        AGENT;
+
+        final String key = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final File file;
+
+    private final boolean json;
+
+    private final Field[] fields;
+
+    private final RingBuffer<Entry> buffer;
+
+    private final long rotateSize;
+
+    private final ChronoUnit rotatePeriod;
+
+    private final boolean gzip;
+
+    private final LongAdder logged = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private Thread writer;
+
+    private ExecutorService compressor;
+
+    private volatile boolean running;
+
+    private volatile boolean sleeping;
+
+    AccessLog(
+            File file,
+            String format,
+            String[] fields,
+            int bufferSize,
+            long rotateSize,
+            String rotatePeriod,
+            boolean gzip) {
+        this.file = file.getAbsoluteFile();
+        this.json = FORMAT_JSON.equalsIgnoreCase(format);
+        this.fields = parseFields(fields);
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.rotateSize = rotateSize;
+        this.rotatePeriod =
+                PERIOD_HOURLY.equalsIgnoreCase(rotatePeriod)
+                        ? ChronoUnit.HOURS
+                        : PERIOD_DAILY.equalsIgnoreCase(rotatePeriod) ? ChronoUnit.DAYS : null;
+        this.gzip = gzip;
+    }
+
+    private static Field[] parseFields(String[] names) {
+        final List<Field> fields = new ArrayList<>();
+        for (String name : names) {
+            try {
+                fields.add(Field.valueOf(name.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Unknown access log field {}", name); // $NON-NLS-1$
+            }
+        }
+        return fields.toArray(new Field[0]);
+    }
+
+    @ManagedAttribute("Records written or waiting to be written")
+    public long getLogged() {
+        return logged.sum();
+    }
+
+    @ManagedAttribute("Records dropped because the buffer was full")
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void log(Request request, Response response) {
+        final Entry entry = new Entry(request, response);
+        if (!running || !buffer.offer(entry)) {
+            dropped.increment();
+            return;
+        }
+        logged.increment();
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        final Writer task = new Writer();
+        task.open();
+        compressor =
+                Executors.newSingleThreadExecutor(
+                        r -> {
+                            final Thread thread =
+                                    new Thread(r, "equinox-jetty-accesslog-gzip"); // $NON-NLS-1$
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        running = true;
+        writer = new Thread(task, "equinox-jetty-accesslog"); // $NON-NLS-1$
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        writer = null;
+        compressor.shutdown();
+        compressor.awaitTermination(30, TimeUnit.SECONDS);
+        compressor = null;
+    }
+
+    /** What the log needs of a request, copied before Jetty recycles it. */
+    private static final class Entry {
+
+        final long time;
+
+        final long duration;
+
+        final String remote;
+
+        final String user;
+
+        final String method;
+
+        final String uri;
+
+        final String protocol;
+
+        final String host;
+
+        final int status;
+
+        final long bytes;
+
+        final String referer;
+
+        final String agent;
+
+        Entry(Request request, Response response) {
+            time = request.getTimeStamp();
+            duration = System.currentTimeMillis() - time;
+            remote = request.getRemoteAddr();
+            // Not getRemoteUser(), which could trigger a deferred authentication.
+            final Authentication authentication = request.getAuthentication();
+            user =
+                    authentication instanceof Authentication.User
+                            ? ((Authentication.User) authentication)
+                                    .getUserIdentity()
+                                    .getUserPrincipal()
+                                    .getName()
+                            : null;
+            method = request.getMethod();
+            uri = request.getOriginalURI();
+            protocol = request.getProtocol();
+            host = request.getHeader(HttpHeader.HOST.asString());
+            status = response.getCommittedMetaData().getStatus();
+            bytes = response.getHttpChannel().getBytesWritten();
+            referer = request.getHeader(HttpHeader.REFERER.asString());
+            agent = request.getHeader(HttpHeader.USER_AGENT.asString());
+        }
+    }
+
+    /** Owns the file and all the buffers; runs on the writer thread only. */
+    private final class Writer implements Runnable {
+
+        private final StringBuilder text = new StringBuilder(64 * 1024);
+
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+        private final DateCache ncsaDate =
+                new DateCache("dd/MMM/yyyy:HH:mm:ss Z", Locale.US); // $NON-NLS-1$
+
+        private final DateCache isoDate =
+                new DateCache("yyyy-MM-dd'T'HH:mm:ss", Locale.US, "UTC"); // $NON-NLS-1$
+
+        private final Entry[] batch = new Entry[BATCH_SIZE];
+
+        private FileChannel channel;
+
+        private long nextRotation = Long.MAX_VALUE;
+
+        void open() throws IOException {
+            final File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Can't create directory " + parent); // $NON-NLS-1$
+            }
+            channel =
+                    FileChannel.open(
+                            file.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+            if (rotatePeriod != null) {
+                nextRotation =
+                        ZonedDateTime.now()
+                                .truncatedTo(rotatePeriod)
+                                .plus(1, rotatePeriod)
+                                .toInstant()
+                                .toEpochMilli();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (; ; ) {
+                    int size = 0;
+                    Entry entry;
+                    while (size < batch.length && (entry = buffer.poll()) != null) {
+                        batch[size++] = entry;
+                    }
+                    if (System.currentTimeMillis() >= nextRotation
+                            || (rotateSize > 0 && channel.size() >= rotateSize)) {
+                        rotate();
+                    }
+                    if (size > 0) {
+                        write(size);
+                    }
+                    if (size < batch.length) {
+                        sleeping = true;
+                        if (buffer.isEmpty()) {
+                            if (!running) {
+                                return;
+                            }
+                            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                        }
+                        sleeping = false;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Access log {} failed, no more records are written", file, e);
+                running = false;
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOG.ignore(e);
+                }
+            }
+        }
+
+        private void write(int size) throws IOException {
+            text.setLength(0);
+            for (int i = 0; i < size; i++) {
+                if (json) {
+                    formatJson(batch[i]);
+                } else {
+                    formatNcsa(batch[i]);
+                }
+                text.append('\n');
+                batch[i] = null;
+            }
+            final CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            for (; ; ) {
+                final CoderResult result = encoder.encode(chars, bytes, true);
+                if (result.isOverflow()) {
+                    flush();
+                } else {
+                    encoder.flush(bytes);
+                    flush();
+                    return;
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        private void rotate() throws IOException {
+            final long now = System.currentTimeMillis();
+            if (rotatePeriod != null && now >= nextRotation) {
+                nextRotation =
+                        ZonedDateTime.now()
+                                .truncatedTo(rotatePeriod)
+                                .plus(1, rotatePeriod)
+                                .toInstant()
+                                .toEpochMilli();
+            }
+            if (channel.size() == 0) {
+                return;
+            }
+            channel.close();
+            final String suffix =
+                    new SimpleDateFormat("yyyy-MM-dd-HHmmss", Locale.ROOT) // $NON-NLS-1$
+                            .format(new Date(now));
+            File rotated = new File(file.getPath() + '.' + suffix);
+            for (int i = 1; rotated.exists() || new File(rotated.getPath() + ".gz").exists(); i++) {
+                rotated = new File(file.getPath() + '.' + suffix + '-' + i);
+            }
+            if (!file.renameTo(rotated)) {
+                LOG.warn("Can't rotate access log {}", file); // $NON-NLS-1$
+                rotated = null;
+            }
+            channel =
+                    FileChannel.open(
+                            file.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+            if (gzip && rotated != null) {
+                final File source = rotated;
+                compressor.execute(() -> compress(source));
+            }
+        }
+
+        private void formatNcsa(Entry entry) {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    text.append(' ');
+                }
+                switch (fields[i]) {
+                    case REMOTE:
+                        plain(entry.remote);
+                        break;
+                    case USER:
+                        // Preceded by the identity, which nobody runs identd for.
+                        text.append("- "); // $NON-NLS-1$
+                        plain(entry.user);
+                        break;
+                    case TIME:
+                        text.append('[').append(ncsaDate.format(entry.time)).append(']');
+                        break;
+                    case REQUEST:
+                        text.append('"');
+                        escape(entry.method);
+                        text.append(' ');
+                        escape(entry.uri);
+                        text.append(' ');
+                        escape(entry.protocol);
+                        text.append('"');
+                        break;
+                    case METHOD:
+                        plain(entry.method);
+                        break;
+                    case URI:
+                        plain(entry.uri);
+                        break;
+                    case PROTOCOL:
+                        plain(entry.protocol);
+                        break;
+                    case HOST:
+                        plain(entry.host);
+                        break;
+                    case STATUS:
+                        text.append(entry.status);
+                        break;
+                    case BYTES:
+                        text.append(entry.bytes);
+                        break;
+                    case DURATION:
+                        text.append(entry.duration);
+                        break;
+                    case REFERER:
+                        quoted(entry.referer);
+                        break;
+                    case AGENT:
+                        quoted(entry.agent);
+                        break;
+                }
+            }
+        }
+
+        private void formatJson(Entry entry) {
+            text.append('{');
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                text.append('"').append(fields[i].key).append("\":"); // $NON-NLS-1$
+                switch (fields[i]) {
+                    case REMOTE:
+                        string(entry.remote);
+                        break;
+                    case USER:
+                        string(entry.user);
+                        break;
+                    case TIME:
+                        final int ms = (int) (entry.time % 1000);
+                        text.append('"').append(isoDate.format(entry.time)).append('.');
+                        text.append((char) ('0' + ms / 100));
+                        text.append((char) ('0' + ms / 10 % 10));
+                        text.append((char) ('0' + ms % 10)).append("Z\""); // $NON-NLS-1$
+                        break;
+                    case REQUEST:
+                        string(entry.method + ' ' + entry.uri + ' ' + entry.protocol);
+                        break;
+                    case METHOD:
+                        string(entry.method);
+                        break;
+                    case URI:
+                        string(entry.uri);
+                        break;
+                    case PROTOCOL:
+                        string(entry.protocol);
+                        break;
+                    case HOST:
+                        string(entry.host);
+                        break;
+                    case STATUS:
+                        text.append(entry.status);
+                        break;
+                    case BYTES:
+                        text.append(entry.bytes);
+                        break;
+                    case DURATION:
+                        text.append(entry.duration);
+                        break;
+                    case REFERER:
+                        string(entry.referer);
+                        break;
+                    case AGENT:
+                        string(entry.agent);
+                        break;
+                }
+            }
+            text.append('}');
+        }
+
+        /** A token without spaces, such as an address or a method. */
+        private void plain(String value) {
+            if (value == null || value.isEmpty()) {
+                text.append('-');
+            } else {
+                escape(value);
+            }
+        }
+
+        private void quoted(String value) {
+            if (value == null) {
+                text.append('-');
+            } else {
+                text.append('"');
+                escape(value);
+                text.append('"');
+            }
+        }
+
+        /** Keeps a value from breaking the line or the quotes, as in Apache's log. */
+        private void escape(String value) {
+            if (value == null) {
+                text.append('-');
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    text.append('\\').append(c);
+                } else if (c < ' ' || c == 0x7f) {
+                    text.append("\\x").append(HEX[c >> 4]).append(HEX[c & 0xf]); // $NON-NLS-1$
+                } else {
+                    text.append(c);
+                }
+            }
+        }
+
+        private void string(String value) {
+            if (value == null) {
+                text.append("null"); // $NON-NLS-1$
+                return;
+            }
+            text.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    text.append('\\').append(c);
+                } else if (c < ' ' || c == 0x7f) {
+                    text.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]); // $NON-NLS-1$
+                } else {
+                    text.append(c);
+                }
+            }
+            text.append('"');
+        }
+    }
+
+    /** Replaces a rotated file with its gzip; runs on the compressor thread. */
+    private static void compress(File source) {
+        final File target = new File(source.getPath() + ".gz"); // $NON-NLS-1$
+        try (InputStream in = Files.newInputStream(source.toPath());
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(target.toPath()))) {
+            final byte[] chunk = new byte[64 * 1024];
+            for (int n; (n = in.read(chunk)) != -1; ) {
+                out.write(chunk, 0, n);
+            }
+        } catch (IOException e) {
+            LOG.warn("Can't compress {}", source, e); // $NON-NLS-1$
+            target.delete();
+            return;
+        }
+        source.delete();
+    }
+}
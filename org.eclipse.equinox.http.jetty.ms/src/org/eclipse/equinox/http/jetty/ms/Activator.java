@@ -1,56 +1,53 @@
 package org.eclipse.equinox.http.jetty.ms;
 
-import java.io.File;
-import java.io.IOError;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.nio.file.Paths;
 import java.util.Dictionary;
 import java.util.Hashtable;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSessionEvent;
 import javax.servlet.http.HttpSessionIdListener;
 import javax.servlet.http.HttpSessionListener;
 
 import org.eclipse.equinox.http.servlet.HttpServiceServlet;
-import org.eclipse.jetty.server.HttpConfiguration;
-import org.eclipse.jetty.server.HttpConnectionFactory;
-import org.eclipse.jetty.server.SecureRequestCustomizer;
-import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.server.ServerConnector;
-import org.eclipse.jetty.server.SslConnectionFactory;
-import org.eclipse.jetty.server.session.HouseKeeper;
-import org.eclipse.jetty.server.session.SessionHandler;
-import org.eclipse.jetty.servlet.ServletContextHandler;
-import org.eclipse.jetty.servlet.ServletHolder;
-import org.eclipse.jetty.util.ssl.SslContextFactory;
-import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
-import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
+import org.osgi.service.cm.ManagedServiceFactory;
 
-public class Activator implements BundleActivator, ManagedService {
+public class Activator implements BundleActivator {
 
-    private static final int DEFAULT_IDLE_TIMEOUT = 30000;
+    private static final Logger LOG = Log.getLogger(Activator.class);
 
-    private static final String INTERNAL_CONTEXT_CLASSLOADER =
+    static final String INTERNAL_CONTEXT_CLASSLOADER =
             "org.eclipse.equinox.http.jetty.internal.ContextClassLoader"; //$NON-NLS-1$
 
-    private static final String DIR_PREFIX = "pid_"; // $NON-NLS-1$
-
-    private static final String CONTEXT_TEMPDIR = "javax.servlet.context.tempdir"; // $NON-NLS-1$
+    // Latency histograms the servlet records its requests in, if any.
+    static final String INTERNAL_ROUTE_LATENCIES =
+            "org.eclipse.equinox.http.jetty.internal.RouteLatencies"; // $NON-NLS-1$
 
-    private static final String JETTY_WORK_DIR = "jettywork"; // $NON-NLS-1$
+    // Executor the servlet hands requests off to, if any.
+    static final String INTERNAL_DISPATCH_EXECUTOR =
+            "org.eclipse.equinox.http.jetty.internal.DispatchExecutor"; //$NON-NLS-1$
 
     // Jetty will use a basic stderr logger if no other logging mechanism is provided.
     // This setting can be used to over-ride the stderr logger threshold(and only this default
@@ -60,299 +57,112 @@ public class Activator implements BundleActivator, ManagedService {
     private static final String LOG_STDERR_THRESHOLD =
             "org.eclipse.equinox.http.jetty.log.stderr.threshold"; //$NON-NLS-1$
 
+    // Read by the JVM once, when its first TLS handshake is made.
+    private static final String JDK_SESSION_TICKETS =
+            "jdk.tls.server.enableSessionTicketExtension"; // $NON-NLS-1$
+
     private static final String DEFAULT_PID = "org.eclipse.equinox.http.jetty.ms"; // $NON-NLS-1$
 
-    // OSGi Http Service suggest these properties for setting the default ports
-    private static final String ORG_OSGI_SERVICE_HTTP_PORT =
-            "org.osgi.service.http.port"; //$NON-NLS-1$
+    // Each configuration of this factory PID runs a server of its own.
+    private static final String FACTORY_PID =
+            "org.eclipse.equinox.http.jetty.ms.factory"; // $NON-NLS-1$
 
-    private static final String ORG_OSGI_SERVICE_HTTP_PORT_SECURE =
-            "org.osgi.service.http.port.secure"; //$NON-NLS-1$
+    private ServiceRegistration<ManagedService> registration;
 
-    private File jettyWorkDir;
+    private ServiceRegistration<ManagedServiceFactory> factoryRegistration;
 
-    private ServiceRegistration<ManagedService> registration;
+    private SharedResources sharedResources;
 
-    private Server httpServer;
+    private AsyncLog asyncLog;
 
-    private BundleContext ctx;
+    private JettyServer defaultServer;
 
-    private void stopHttpServer() throws Exception {
-        if (httpServer != null) {
-            httpServer.stop();
-            httpServer = null;
-            File contextWorkDir = new File(jettyWorkDir, "");
-            if (!deleteDirectory(contextWorkDir)) {
-                throw new IOException("Can't delete directory " + contextWorkDir.getAbsolutePath());
-            }
-            jettyWorkDir = null;
-        }
-    }
+    private HttpServerManager serverManager;
 
     @Override
-    public void updated(Dictionary<String, ?> properties) throws ConfigurationException {
-        try {
-            stopHttpServer();
-        } catch (Exception e) {
-            throw new ConfigurationException(DEFAULT_PID, e.getMessage(), e);
-        }
+    public synchronized void start(BundleContext context) throws Exception {
 
-        if (properties == null) {
-            return;
+        EquinoxStdErrLog.setThresholdLogger(context.getProperty(LOG_STDERR_THRESHOLD));
+        if (Details.getBooleanProp(context, JettyConstants.LOG_ASYNC, false)) {
+            asyncLog = AsyncLog.create(context);
+            asyncLog.start();
+            EquinoxStdErrLog.setAsyncLog(asyncLog);
         }
 
-        final Server server =
-                new Server(
-                        new QueuedThreadPool(
-                                Details.getInt(properties, JettyConstants.HTTP_MAXTHREADS, 200),
-                                Details.getInt(properties, JettyConstants.HTTP_MINTHREADS, 8)));
-
-        /** May be modified by createHttp(s)Connector. */
-        final HttpConfiguration http_config = new HttpConfiguration();
-
-        final ServerConnector httpConnector = createHttpConnector(properties, server, http_config);
-
-        final ServerConnector httpsConnector;
-        try {
-            httpsConnector = createHttpsConnector(properties, server, http_config);
-        } catch (IOError e) {
-            throw new ConfigurationException(DEFAULT_PID, e.getMessage(), e);
+        final String sessionTickets =
+                Details.getStringProp(context, JettyConstants.SSL_SESSIONTICKETS, null);
+        if (sessionTickets != null && System.getProperty(JDK_SESSION_TICKETS) == null) {
+            System.setProperty(JDK_SESSION_TICKETS, sessionTickets);
         }
 
-        if (httpConnector != null) {
-            try {
-                httpConnector.open();
-            } catch (IOException e) {
-                throw new ConfigurationException(DEFAULT_PID, e.getMessage(), e);
-            }
-            server.addConnector(httpConnector);
+        if (Details.getBooleanProp(context, JettyConstants.SHARED_RESOURCES, false)) {
+            sharedResources = new SharedResources(context);
+            sharedResources.start(context);
         }
 
-        if (httpsConnector != null) {
-            try {
-                httpsConnector.open();
-            } catch (IOException e) {
-                throw new ConfigurationException(DEFAULT_PID, e.getMessage(), e);
-            }
-            server.addConnector(httpsConnector);
-        }
-
-        final ServletHolder holder = new ServletHolder(new InternalHttpServiceServlet());
-        holder.setInitOrder(0);
-        holder.setInitParameter(Constants.SERVICE_VENDOR, "Eclipse.org"); // $NON-NLS-1$
-        holder.setInitParameter(
-                Constants.SERVICE_DESCRIPTION, "Equinox Jetty-based Http Service"); // $NON-NLS-1$
-
-        final String multipartServletName =
-                "Equinox Jetty-based Http Service - Multipart Servlet"; //$NON-NLS-1$
-
-        holder.setInitParameter("multipart.servlet.name", multipartServletName); // $NON-NLS-1$
-
-        if (httpConnector != null) {
-            int port = httpConnector.getLocalPort();
-            if (port == -1) port = httpConnector.getPort();
-            holder.setInitParameter(JettyConstants.HTTP_PORT, Integer.toString(port));
-            final String host = httpConnector.getHost();
-            if (host != null) holder.setInitParameter(JettyConstants.HTTP_HOST, host);
-        }
-        if (httpsConnector != null) {
-            int port = httpsConnector.getLocalPort();
-            if (port == -1) port = httpsConnector.getPort();
-            holder.setInitParameter(JettyConstants.HTTPS_PORT, Integer.toString(port));
-            final String host = httpsConnector.getHost();
-            if (host != null) holder.setInitParameter(JettyConstants.HTTPS_HOST, host);
-        }
-        final String otherInfo = Details.getString(properties, JettyConstants.OTHER_INFO, null);
-        if (otherInfo != null) holder.setInitParameter(JettyConstants.OTHER_INFO, otherInfo);
-
-        final ServletContextHandler httpContext;
-        try {
-            httpContext = createHttpContext(properties);
-        } catch (IOException e) {
-            throw new ConfigurationException(DEFAULT_PID, e.getMessage(), e);
-        }
-        holder.setInitParameter(JettyConstants.CONTEXT_PATH, httpContext.getContextPath());
-        httpContext.addServlet(holder, "/*"); // $NON-NLS-1$
-        server.setHandler(httpContext);
-
-        try {
-            server.start();
-            final SessionHandler sessionManager = httpContext.getSessionHandler();
-            sessionManager.addEventListener((HttpSessionIdListener) holder.getServlet());
-            final HouseKeeper houseKeeper = server.getSessionIdManager().getSessionHouseKeeper();
-            houseKeeper.setIntervalSec(
-                    Details.getLong(
-                            properties,
-                            JettyConstants.HOUSEKEEPER_INTERVAL,
-                            houseKeeper.getIntervalSec()));
-        } catch (Exception e) {
-            throw new ConfigurationException(DEFAULT_PID, e.getMessage(), e);
-        }
-
-        httpServer = server;
-    }
-
-    @Override
-    public synchronized void start(BundleContext context) throws Exception {
-
-        ctx = context;
-
-        EquinoxStdErrLog.setThresholdLogger(context.getProperty(LOG_STDERR_THRESHOLD));
-
+        defaultServer = new JettyServer(context, DEFAULT_PID, sharedResources);
         final Dictionary<String, Object> dictionary = new Hashtable<>();
         dictionary.put(Constants.SERVICE_PID, DEFAULT_PID);
-
-        registration = context.registerService(ManagedService.class, this, dictionary);
+        registration = context.registerService(ManagedService.class, defaultServer, dictionary);
+
+        serverManager = new HttpServerManager(context, sharedResources);
+        final Dictionary<String, Object> factoryDictionary = new Hashtable<>();
+        factoryDictionary.put(Constants.SERVICE_PID, FACTORY_PID);
+        factoryRegistration =
+                context.registerService(
+                        ManagedServiceFactory.class, serverManager, factoryDictionary);
     }
 
     @Override
     public synchronized void stop(BundleContext context) throws Exception {
+        factoryRegistration.unregister();
+        factoryRegistration = null;
         registration.unregister();
         registration = null;
-        stopHttpServer();
-        ctx = null;
-    }
-
-    private ServerConnector createHttpsConnector(
-            Dictionary<String, ?> dictionary, Server server, HttpConfiguration http_config) {
-        ServerConnector httpsConnector = null;
-        if (Details.getBoolean(dictionary, JettyConstants.HTTPS_ENABLED, false)) {
-            // SSL Context Factory for HTTPS and SPDY
-            final SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
-
-            // Not sure if the next tree are properly migrated from jetty 8...
-            final String strPath =
-                    Details.getString(dictionary, JettyConstants.SSL_KEYSTORE_PATH, null);
-            if (strPath != null) {
-                sslContextFactory.setKeyStorePath(Paths.get(strPath).toAbsolutePath().toString());
-            } else {
-                sslContextFactory.setKeyStorePath(null);
-            }
-            sslContextFactory.setKeyStorePassword(
-                    Details.getString(dictionary, JettyConstants.SSL_KEYSTORE_PASSWORD, null));
-            sslContextFactory.setKeyManagerPassword(
-                    Details.getString(dictionary, JettyConstants.SSL_KEY_PASSWORD, null));
-            sslContextFactory.setKeyStoreType(
-                    Details.getString(
-                            dictionary, JettyConstants.SSL_KEYSTORE_TYPE, "PKCS12")); // $NON-NLS-1$
-            sslContextFactory.setProtocol(
-                    Details.getString(
-                            dictionary, JettyConstants.SSL_PROTOCOL, "TLS")); // $NON-NLS-1$
-            sslContextFactory.setWantClientAuth(
-                    Details.getBoolean(dictionary, JettyConstants.SSL_WANTCLIENTAUTH, false));
-            sslContextFactory.setNeedClientAuth(
-                    Details.getBoolean(dictionary, JettyConstants.SSL_NEEDCLIENTAUTH, false));
-            // TODO trust store.
-
-            // HTTPS Configuration
-            final HttpConfiguration https_config = new HttpConfiguration(http_config);
-            https_config.addCustomizer(new SecureRequestCustomizer());
-
-            // HTTPS connector
-            httpsConnector =
-                    new ServerConnector(
-                            server,
-                            new SslConnectionFactory(sslContextFactory, "http/1.1"),
-                            new HttpConnectionFactory(https_config)); // $NON-NLS-1$
-            int httpsPort = Details.getInt(dictionary, JettyConstants.HTTPS_PORT, -1);
-            if (httpsPort == -1) {
-                httpsPort = Details.getInt(dictionary, ORG_OSGI_SERVICE_HTTP_PORT_SECURE, 443);
-            }
-            httpsConnector.setPort(httpsPort);
-            httpsConnector.setHost(Details.getString(dictionary, JettyConstants.HTTPS_HOST, null));
+        serverManager.shutdown();
+        serverManager = null;
+        defaultServer.stop();
+        defaultServer = null;
+        if (sharedResources != null) {
+            sharedResources.stop();
+            sharedResources = null;
         }
-        return httpsConnector;
-    }
-
-    private ServerConnector createHttpConnector(
-            Dictionary<String, ?> dictionary, Server server, HttpConfiguration http_config) {
-        ServerConnector httpConnector = null;
-        if (Details.getBoolean(dictionary, JettyConstants.HTTP_ENABLED, true)) {
-            // HTTP Configuration
-            if (Details.getBoolean(dictionary, JettyConstants.HTTPS_ENABLED, false)) {
-                http_config.setSecureScheme("https"); // $NON-NLS-1$
-                int httpsPort = Details.getInt(dictionary, JettyConstants.HTTPS_PORT, -1);
-                if (httpsPort == -1) {
-                    httpsPort = Details.getInt(dictionary, ORG_OSGI_SERVICE_HTTP_PORT_SECURE, 443);
-                }
-                http_config.setSecurePort(httpsPort);
-            }
-            // HTTP connector
-            httpConnector = new ServerConnector(server, new HttpConnectionFactory(http_config));
-            int httpPort = Details.getInt(dictionary, JettyConstants.HTTP_PORT, -1);
-            if (httpPort == -1) {
-                httpPort = Details.getInt(dictionary, ORG_OSGI_SERVICE_HTTP_PORT, 80);
-            }
-            httpConnector.setPort(httpPort);
-            httpConnector.setHost(Details.getString(dictionary, JettyConstants.HTTP_HOST, null));
-            httpConnector.setIdleTimeout(DEFAULT_IDLE_TIMEOUT);
+        if (asyncLog != null) {
+            EquinoxStdErrLog.setAsyncLog(null);
+            asyncLog.stop();
+            asyncLog = null;
         }
-        return httpConnector;
-    }
-
-    private ServletContextHandler createHttpContext(Dictionary<String, ?> dictionary)
-            throws IOException {
-        jettyWorkDir = new File(ctx.getDataFile(""), JETTY_WORK_DIR); // $NON-NLS-1$
-        if (!jettyWorkDir.mkdir()) {
-            throw new IOException("Can't create directory " + jettyWorkDir.getPath());
-        }
-
-        ServletContextHandler httpContext = new ServletContextHandler();
-        // hack in the mime type for xsd until jetty fixes it (bug 393218)
-        httpContext
-                .getMimeTypes()
-                .addMimeMapping("xsd", "application/xml"); // $NON-NLS-1$ //$NON-NLS-2$
-        httpContext.setAttribute(
-                INTERNAL_CONTEXT_CLASSLOADER, Thread.currentThread().getContextClassLoader());
-        httpContext.setClassLoader(this.getClass().getClassLoader());
-        httpContext.setContextPath(
-                Details.getString(dictionary, JettyConstants.CONTEXT_PATH, "/")); // $NON-NLS-1$
-
-        File contextWorkDir =
-                new File(
-                        jettyWorkDir,
-                        DIR_PREFIX + dictionary.get(Constants.SERVICE_PID).hashCode());
-        contextWorkDir.mkdir();
-        httpContext.setAttribute(CONTEXT_TEMPDIR, contextWorkDir);
-        SessionHandler handler = new SessionHandler();
-        handler.setMaxInactiveInterval(
-                Details.getInt(dictionary, JettyConstants.CONTEXT_SESSIONINACTIVEINTERVAL, -1));
-        httpContext.setSessionHandler(handler);
-
-        return httpContext;
     }
 
     public static class InternalHttpServiceServlet
             implements HttpSessionListener, HttpSessionIdListener, Servlet {
         //		private static final long serialVersionUID = 7477982882399972088L;
-        private final Servlet httpServiceServlet = new HttpServiceServlet();
+        private final HttpServiceServlet httpServiceServlet;
         private ClassLoader contextLoader;
-        private final Method sessionDestroyed;
-        private final Method sessionIdChanged;
+        private Executor dispatchExecutor;
+        private RouteLatencies routeLatencies;
+        // Bound once; the Http Service servlet takes session callbacks by id.
+        private final Consumer<String> sessionDestroyed;
+        private final Consumer<String> sessionIdChanged;
 
         public InternalHttpServiceServlet() {
-            Class<?> clazz = httpServiceServlet.getClass();
+            this(new HttpServiceServlet());
+        }
 
-            try {
-                sessionDestroyed =
-                        clazz.getMethod(
-                                "sessionDestroyed", new Class<?>[] {String.class}); // $NON-NLS-1$
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
-            }
-            try {
-                sessionIdChanged =
-                        clazz.getMethod(
-                                "sessionIdChanged", new Class<?>[] {String.class}); // $NON-NLS-1$
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
-            }
+        InternalHttpServiceServlet(HttpServiceServlet httpServiceServlet) {
+            this.httpServiceServlet = httpServiceServlet;
+            // Lambdas rather than method references: a method reference would be bound to the
+            // class that declares the method, which is internal to the Http Service bundle.
+            sessionDestroyed = id -> httpServiceServlet.sessionDestroyed(id);
+            sessionIdChanged = id -> httpServiceServlet.sessionIdChanged(id);
         }
 
         @Override
         public void init(ServletConfig config) throws ServletException {
             ServletContext context = config.getServletContext();
             contextLoader = (ClassLoader) context.getAttribute(INTERNAL_CONTEXT_CLASSLOADER);
+            dispatchExecutor = (Executor) context.getAttribute(INTERNAL_DISPATCH_EXECUTOR);
+            routeLatencies = (RouteLatencies) context.getAttribute(INTERNAL_ROUTE_LATENCIES);
 
             Thread thread = Thread.currentThread();
             ClassLoader current = thread.getContextClassLoader();
@@ -375,11 +185,123 @@ public class Activator implements BundleActivator, ManagedService {
                 thread.setContextClassLoader(current);
             }
             contextLoader = null;
+            dispatchExecutor = null;
+            routeLatencies = null;
         }
 
         @Override
         public void service(ServletRequest req, ServletResponse res)
                 throws ServletException, IOException {
+            final long start = routeLatencies != null ? System.nanoTime() : 0;
+            if (dispatchExecutor != null
+                    && req instanceof HttpServletRequest
+                    && req.isAsyncSupported()
+                    && req.getDispatcherType() == DispatcherType.REQUEST) {
+                dispatch(req, start);
+                return;
+            }
+            try {
+                serviceInContext(req, res);
+            } finally {
+                if (routeLatencies != null
+                        && req instanceof HttpServletRequest
+                        && res instanceof HttpServletResponse) {
+                    recordLatency((HttpServletRequest) req, (HttpServletResponse) res, start);
+                }
+            }
+        }
+
+        /** Records now, or when the request completes if the servlet went async. */
+        private void recordLatency(HttpServletRequest req, HttpServletResponse res, long start) {
+            final RouteLatencies latencies = routeLatencies;
+            if (!req.isAsyncStarted()) {
+                latencies.record(req, res.getStatus(), System.nanoTime() - start);
+                return;
+            }
+            req.getAsyncContext().addListener(latencyListener(latencies, req, res, start));
+        }
+
+        private static AsyncListener latencyListener(
+                RouteLatencies latencies,
+                HttpServletRequest req,
+                HttpServletResponse res,
+                long start) {
+            return new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    latencies.record(req, res.getStatus(), System.nanoTime() - start);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    // Completes next.
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    // Completes next.
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                    event.getAsyncContext().addListener(this);
+                }
+            };
+        }
+
+        /**
+         * Continues the request on {@link #dispatchExecutor} and releases the container thread.
+         * Servlets behind the Http Service that start async take over the container's async
+         * context, and complete it themselves.
+         */
+        private void dispatch(ServletRequest req, long start) {
+            final AsyncContext async = req.startAsync();
+            final DispatchedRequest request =
+                    new DispatchedRequest((HttpServletRequest) async.getRequest(), async);
+            async.setTimeout(0);
+            if (routeLatencies != null) {
+                // Whoever completes the request, this thread or an async servlet.
+                async.addListener(
+                        latencyListener(
+                                routeLatencies,
+                                (HttpServletRequest) async.getRequest(),
+                                (HttpServletResponse) async.getResponse(),
+                                start));
+            }
+            final Runnable task =
+                    () -> {
+                        final HttpServletResponse response =
+                                (HttpServletResponse) async.getResponse();
+                        boolean failed = true;
+                        try {
+                            serviceInContext(request, response);
+                            failed = false;
+                        } catch (Throwable t) {
+                            LOG.warn(t);
+                            if (!response.isCommitted()) {
+                                try {
+                                    response.sendError(
+                                            HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                                } catch (IOException e) {
+                                    LOG.ignore(e);
+                                }
+                            }
+                        } finally {
+                            if (failed || !request.isAsyncStarted()) {
+                                async.complete();
+                            }
+                        }
+                    };
+            try {
+                dispatchExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The server is stopping.
+                task.run();
+            }
+        }
+
+        private void serviceInContext(ServletRequest req, ServletResponse res)
+                throws ServletException, IOException {
             Thread thread = Thread.currentThread();
             ClassLoader current = thread.getContextClassLoader();
             thread.setContextClassLoader(contextLoader);
@@ -407,49 +329,165 @@ public class Activator implements BundleActivator, ManagedService {
 
         @Override
         public void sessionDestroyed(HttpSessionEvent event) {
-            Thread thread = Thread.currentThread();
-            ClassLoader current = thread.getContextClassLoader();
-            thread.setContextClassLoader(contextLoader);
-            try {
-                sessionDestroyed.invoke(httpServiceServlet, event.getSession().getId());
-            } catch (IllegalAccessException | IllegalArgumentException e) {
-                // not likely
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException(e.getCause());
-            } finally {
-                thread.setContextClassLoader(current);
-            }
+            callInContext(contextLoader, sessionDestroyed, event.getSession().getId());
         }
 
         @Override
         public void sessionIdChanged(HttpSessionEvent event, String oldSessionId) {
+            callInContext(contextLoader, sessionIdChanged, oldSessionId);
+        }
+
+        /**
+         * Calls a session callback of the Http Service servlet with the context class loader set.
+         * Whatever it throws is wrapped in a {@link RuntimeException}, as when the callbacks were
+         * called through reflection.
+         */
+        static void callInContext(
+                ClassLoader contextLoader, Consumer<String> callback, String sessionId) {
             Thread thread = Thread.currentThread();
             ClassLoader current = thread.getContextClassLoader();
             thread.setContextClassLoader(contextLoader);
             try {
-                sessionIdChanged.invoke(httpServiceServlet, oldSessionId);
-            } catch (IllegalAccessException | IllegalArgumentException e) {
-                // not likely
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException(e.getCause());
+                callback.accept(sessionId);
+            } catch (RuntimeException | Error e) {
+                throw new RuntimeException(e);
             } finally {
                 thread.setContextClassLoader(current);
             }
         }
     }
 
-    // deleteDirectory is a convenience method to recursively delete a directory
-    private static boolean deleteDirectory(File directory) {
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    deleteDirectory(file);
-                } else {
-                    file.delete();
-                }
+    /**
+     * A request that the dispatch has made async. To the servlets it looks like a request that has
+     * not started async yet; starting it hands them the async context the dispatch holds.
+     */
+    private static class DispatchedRequest extends HttpServletRequestWrapper {
+
+        private final AsyncContext async;
+
+        // The container's, before the dispatch turned it off.
+        private final long timeout;
+
+        private volatile boolean started;
+
+        DispatchedRequest(HttpServletRequest request, AsyncContext async) {
+            super(request);
+            this.async = async;
+            this.timeout = async.getTimeout();
+        }
+
+        @Override
+        public AsyncContext startAsync() {
+            return start();
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+            return new AsyncContextView(start(), request, response);
+        }
+
+        private AsyncContext start() {
+            if (!started) {
+                async.setTimeout(timeout);
+                started = true;
             }
+            return async;
+        }
+
+        @Override
+        public boolean isAsyncStarted() {
+            return started;
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            if (!started) {
+                throw new IllegalStateException("Async not started"); // $NON-NLS-1$
+            }
+            return async;
+        }
+    }
+
+    /** The async context of a dispatched request, with the request and response of the servlet. */
+    private static class AsyncContextView implements AsyncContext {
+
+        private final AsyncContext async;
+
+        private final ServletRequest request;
+
+        private final ServletResponse response;
+
+        AsyncContextView(AsyncContext async, ServletRequest request, ServletResponse response) {
+            this.async = async;
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return response;
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return false;
+        }
+
+        @Override
+        public void dispatch() {
+            async.dispatch();
+        }
+
+        @Override
+        public void dispatch(String path) {
+            async.dispatch(path);
+        }
+
+        @Override
+        public void dispatch(ServletContext context, String path) {
+            async.dispatch(context, path);
+        }
+
+        @Override
+        public void complete() {
+            async.complete();
+        }
+
+        @Override
+        public void start(Runnable run) {
+            async.start(run);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            async.addListener(listener, request, response);
+        }
+
+        @Override
+        public void addListener(
+                AsyncListener listener, ServletRequest request, ServletResponse response) {
+            async.addListener(listener, request, response);
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> clazz)
+                throws ServletException {
+            return async.createListener(clazz);
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+            async.setTimeout(timeout);
+        }
+
+        @Override
+        public long getTimeout() {
+            return async.getTimeout();
         }
-        return directory.delete();
     }
 }
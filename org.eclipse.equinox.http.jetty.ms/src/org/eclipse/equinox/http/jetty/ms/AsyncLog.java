@@ -0,0 +1,476 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.DateCache;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.log.LogService;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * Logging backend that takes events off the calling thread. Callers fill in the message and put
+ * the event in a {@link RingBuffer} without taking a lock; one writer thread drains it in batches
+ * and writes them the way Jetty's StdErrLog does. When the buffer is full the event is dropped and
+ * counted, or the caller waits for room, depending on the drop policy.
+ */
+@ManagedObject("Asynchronous log")
+class AsyncLog {
+
+    static final String TARGET_STDERR = "stderr"; // $NON-NLS-1$
+
+    static final String TARGET_FILE = "file"; // $NON-NLS-1$
+
+    static final String TARGET_LOGSERVICE = "logservice"; // $NON-NLS-1$
+
+    static final String POLICY_DISCARD = "discard"; // $NON-NLS-1$
+
+    static final String POLICY_BLOCK = "block"; // $NON-NLS-1$
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final String EOL = System.lineSeparator();
+
+    private static final String[] LEVELS = {":DBUG:", ":INFO:", ":WARN:", ":WARN:"}; // $NON-NLS-1$
+
+    private final RingBuffer<Event> buffer;
+
+    private final boolean block;
+
+    private final Target target;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    private volatile boolean sleeping;
+
+    AsyncLog(int bufferSize, String dropPolicy, Target target) {
+        buffer = new RingBuffer<>(bufferSize);
+        block = POLICY_BLOCK.equalsIgnoreCase(dropPolicy);
+        this.target = target;
+        writer = new Thread(this::drain, "equinox-jetty-log"); // $NON-NLS-1$
+        writer.setDaemon(true);
+    }
+
+    /** Creates the log configured by the framework properties. */
+    static AsyncLog create(BundleContext context) throws IOException {
+        final String name =
+                Details.getStringProp(context, JettyConstants.LOG_ASYNC_TARGET, TARGET_STDERR);
+        final Target target;
+        if (TARGET_FILE.equalsIgnoreCase(name)) {
+            final String path = Details.getStringProp(context, JettyConstants.LOG_ASYNC_FILE, null);
+            target =
+                    new FileTarget(
+                            path != null
+                                    ? new File(path)
+                                    : context.getDataFile("jetty.log")); // $NON-NLS-1$
+        } else if (TARGET_LOGSERVICE.equalsIgnoreCase(name)) {
+            target = new LogServiceTarget(context);
+        } else {
+            target = new StdErrTarget();
+        }
+        return new AsyncLog(
+                Details.getIntProp(context, JettyConstants.LOG_ASYNC_BUFFERSIZE, 8192),
+                Details.getStringProp(context, JettyConstants.LOG_ASYNC_DROPPOLICY, POLICY_DISCARD),
+                target);
+    }
+
+    void start() {
+        target.open();
+        writer.start();
+    }
+
+    /** Writes out what has been logged so far and stops the writer. */
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        target.close();
+    }
+
+    @ManagedAttribute("Events dropped because the buffer was full")
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Queues an event; {@code level} is one of the levels of {@link EquinoxStdErrLog}. The
+     * arguments are formatted into the message here, as the caller may change them once this
+     * returns; only the throwable is kept.
+     */
+    void log(int level, String name, String msg, Object[] args, Throwable thrown) {
+        final Event event =
+                new Event(
+                        level,
+                        name,
+                        format(msg, args, thrown),
+                        cause(args, thrown),
+                        Thread.currentThread().getName(),
+                        System.currentTimeMillis());
+        while (!buffer.offer(event)) {
+            if (!block || !running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void drain() {
+        final Formatter formatter = new Formatter();
+        final Event[] batch = new Event[BATCH_SIZE];
+        long reported = 0;
+        for (; ; ) {
+            int size = 0;
+            Event event;
+            while (size < batch.length && (event = buffer.poll()) != null) {
+                batch[size++] = event;
+            }
+            if (size > 0) {
+                target.write(batch, size, formatter);
+                Arrays.fill(batch, 0, size, null);
+            }
+            final long drops = dropped.sum();
+            if (drops != reported) {
+                final Event warning =
+                        new Event(
+                                EquinoxStdErrLog.WARN,
+                                AsyncLog.class.getName(),
+                                (drops - reported)
+                                        + " log events dropped, the buffer was full", // $NON-NLS-1$
+                                null,
+                                writer.getName(),
+                                System.currentTimeMillis());
+                target.write(new Event[] {warning}, 1, formatter);
+                reported = drops;
+            }
+            if (size < batch.length) {
+                sleeping = true;
+                if (buffer.isEmpty()) {
+                    if (!running) {
+                        sleeping = false;
+                        return;
+                    }
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    /** Puts the arguments in the message, without the throwable that may end them. */
+    private static String format(String msg, Object[] args, Throwable thrown) {
+        final StringBuilder builder = new StringBuilder();
+        int count = args == null ? 0 : args.length;
+        if (count > 0 && thrown == null && args[count - 1] instanceof Throwable) {
+            count--;
+        }
+        if (msg == null) {
+            final StringBuilder braces = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                braces.append("{} "); // $NON-NLS-1$
+            }
+            msg = braces.toString();
+        }
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            final int braces = msg.indexOf("{}", start); // $NON-NLS-1$
+            if (braces < 0) {
+                Formatter.escape(builder, msg.substring(start));
+                builder.append(' ');
+                start = msg.length();
+            } else {
+                Formatter.escape(builder, msg.substring(start, braces));
+                start = braces + 2;
+            }
+            if (args[i] != null) {
+                builder.append(args[i]);
+            }
+        }
+        Formatter.escape(builder, msg.substring(start));
+        return builder.toString();
+    }
+
+    private static Throwable cause(Object[] args, Throwable thrown) {
+        if (thrown != null) {
+            return thrown;
+        }
+        if (args != null && args.length > 0 && args[args.length - 1] instanceof Throwable) {
+            return (Throwable) args[args.length - 1];
+        }
+        return null;
+    }
+
+    private static final class Event {
+
+        final int level;
+
+        final String name;
+
+        final String message;
+
+        final Throwable thrown;
+
+        final String thread;
+
+        final long time;
+
+        Event(
+                int level,
+                String name,
+                String message,
+                Throwable thrown,
+                String thread,
+                long time) {
+            this.level = level;
+            this.name = name;
+            this.message = message;
+            this.thrown = thrown;
+            this.thread = thread;
+            this.time = time;
+        }
+    }
+
+    /** Formats events like StdErrLog, on the writer thread only. */
+    private static final class Formatter {
+
+        private final DateCache dateCache = new DateCache("yyyy-MM-dd HH:mm:ss"); // $NON-NLS-1$
+
+        void format(StringBuilder builder, Event event) {
+            final int ms = (int) (event.time % 1000);
+            builder.append(dateCache.format(event.time));
+            builder.append(ms > 99 ? "." : ms > 9 ? ".0" : ".00").append(ms); // $NON-NLS-1$
+            builder.append(LEVELS[event.level]).append(condense(event.name));
+            builder.append(':').append(event.thread).append(": "); // $NON-NLS-1$
+            builder.append(message(event));
+            if (event.thrown != null) {
+                formatCause(builder, event.thrown, ""); // $NON-NLS-1$
+            }
+            builder.append(EOL);
+        }
+
+        /** The message without the tag and the stack trace. */
+        String message(Event event) {
+            return event.level == EquinoxStdErrLog.ERROR
+                    ? "ERROR:  " + event.message // $NON-NLS-1$
+                    : event.message;
+        }
+
+        private void formatCause(StringBuilder builder, Throwable cause, String indent) {
+            builder.append(EOL).append(indent);
+            escape(builder, cause.toString());
+            for (StackTraceElement element : cause.getStackTrace()) {
+                builder.append(EOL).append(indent).append("\tat "); // $NON-NLS-1$
+                escape(builder, element.toString());
+            }
+            for (Throwable suppressed : cause.getSuppressed()) {
+                builder.append(EOL).append(indent).append("Suppressed: "); // $NON-NLS-1$
+                formatCause(builder, suppressed, "\t|" + indent); // $NON-NLS-1$
+            }
+            final Throwable by = cause.getCause();
+            if (by != null && by != cause) {
+                builder.append(EOL).append(indent).append("Caused by: "); // $NON-NLS-1$
+                formatCause(builder, by, indent);
+            }
+        }
+
+        /** Keeps a logged value from starting lines of its own, as StdErrLog does. */
+        static void escape(StringBuilder builder, String str) {
+            for (int i = 0; i < str.length(); i++) {
+                final char c = str.charAt(i);
+                if (Character.isISOControl(c)) {
+                    builder.append(c == '\n' ? '|' : c == '\r' ? '<' : '?');
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+
+        /** org.eclipse.jetty.server.HttpChannel becomes oejs.HttpChannel. */
+        private static String condense(String name) {
+            if (name == null) {
+                return ""; // $NON-NLS-1$
+            }
+            final int last = name.lastIndexOf('.');
+            if (last < 0) {
+                return name;
+            }
+            final StringBuilder dense = new StringBuilder();
+            boolean start = true;
+            for (int i = 0; i < last; i++) {
+                final char c = name.charAt(i);
+                if (start && c != '.') {
+                    dense.append(c);
+                }
+                start = c == '.';
+            }
+            return dense.append(name, last, name.length()).toString();
+        }
+    }
+
+    /** Where the writer thread puts the events. */
+    private interface Target {
+
+        void open();
+
+        void write(Event[] events, int size, Formatter formatter);
+
+        void close();
+    }
+
+    private static class StdErrTarget implements Target {
+
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void open() {
+            // Nothing to do.
+        }
+
+        @Override
+        public void write(Event[] events, int size, Formatter formatter) {
+            builder.setLength(0);
+            for (int i = 0; i < size; i++) {
+                formatter.format(builder, events[i]);
+            }
+            // Looked up each time, in case someone has replaced System.err.
+            final PrintStream err = System.err;
+            err.print(builder);
+            err.flush();
+        }
+
+        @Override
+        public void close() {
+            // Nothing to do.
+        }
+    }
+
+    private static class FileTarget extends StdErrTarget {
+
+        private final File file;
+
+        private Writer out;
+
+        FileTarget(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void open() {
+            final File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            try {
+                out =
+                        new BufferedWriter(
+                                new OutputStreamWriter(
+                                        new FileOutputStream(file, true),
+                                        StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Can't open log file " + file + ": " + e); // $NON-NLS-1$
+            }
+        }
+
+        @Override
+        public void write(Event[] events, int size, Formatter formatter) {
+            if (out == null) {
+                super.write(events, size, formatter);
+                return;
+            }
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                formatter.format(builder, events[i]);
+            }
+            try {
+                out.write(builder.toString());
+                out.flush();
+            } catch (IOException e) {
+                System.err.print(builder);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Nothing more can be written anyway.
+                }
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * Hands events to the OSGi LogService, which has its own time stamps and levels. Falls back to
+     * stderr while there is no LogService.
+     */
+    private static class LogServiceTarget extends StdErrTarget {
+
+        private final ServiceTracker<LogService, LogService> tracker;
+
+        LogServiceTarget(BundleContext context) {
+            tracker = new ServiceTracker<>(context, LogService.class, null);
+        }
+
+        @Override
+        public void open() {
+            tracker.open();
+        }
+
+        @Override
+        public void write(Event[] events, int size, Formatter formatter) {
+            final LogService logService = tracker.getService();
+            if (logService == null) {
+                super.write(events, size, formatter);
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                final Event event = events[i];
+                final org.osgi.service.log.Logger logger =
+                        logService.getLogger(event.name != null ? event.name : ""); // $NON-NLS-1$
+                final String message = formatter.message(event);
+                final Throwable cause = event.thrown;
+                switch (event.level) {
+                    case EquinoxStdErrLog.DEBUG:
+                        logger.debug("{}", message, cause); // $NON-NLS-1$
+                        break;
+                    case EquinoxStdErrLog.INFO:
+                        logger.info("{}", message, cause); // $NON-NLS-1$
+                        break;
+                    case EquinoxStdErrLog.WARN:
+                        logger.warn("{}", message, cause); // $NON-NLS-1$
+                        break;
+                    default:
+                        logger.error("{}", message, cause); // $NON-NLS-1$
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            tracker.close();
+        }
+    }
+}
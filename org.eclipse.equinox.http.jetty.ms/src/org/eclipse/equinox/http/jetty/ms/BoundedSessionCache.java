@@ -0,0 +1,204 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.server.session.DefaultSessionCache;
+import org.eclipse.jetty.server.session.Session;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Locker.Lock;
+
+/**
+ * Session cache that keeps at most a given number of sessions in memory. Adding one more evicts
+ * the least recently accessed of a few sessions, sampled at random, that no request is using, the
+ * same way an idle session is evicted: it is written to the store first only if
+ * saveOnInactiveEviction is set. The ids of the cached sessions are also kept packed in an array,
+ * so a sample takes the same time whatever the size of the cache.
+ */
+@ManagedObject("Session cache with a maximum size")
+class BoundedSessionCache extends DefaultSessionCache {
+
+    private static final Logger LOG = Log.getLogger(BoundedSessionCache.class);
+
+    private static final int SAMPLE_SIZE = 16;
+
+    private final int maxSessions;
+
+    private final LongAdder evicted = new LongAdder();
+
+    // Guards ids and size. Only sessions coming and going take it, not requests.
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    private String[] ids = new String[64];
+
+    private int size;
+
+    BoundedSessionCache(SessionHandler handler, int maxSessions) {
+        super(handler);
+        this.maxSessions = maxSessions;
+    }
+
+    @ManagedAttribute("Maximum number of sessions in memory")
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    @ManagedAttribute("Sessions evicted to stay within the maximum")
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    @Override
+    public Session newSession(SessionData data) {
+        return new CachedSession(getSessionHandler(), data);
+    }
+
+    @Override
+    public Session newSession(HttpServletRequest request, SessionData data) {
+        return new CachedSession(getSessionHandler(), request, data);
+    }
+
+    @Override
+    public Session doPutIfAbsent(String id, Session session) {
+        final Session existing = super.doPutIfAbsent(id, session);
+        if (existing == null) {
+            index(id);
+            shrink(id);
+        }
+        return existing;
+    }
+
+    @Override
+    protected Session doComputeIfAbsent(String id, Function<String, Session> mappingFunction) {
+        final Session session = super.doComputeIfAbsent(id, mappingFunction);
+        index(id);
+        shrink(id);
+        return session;
+    }
+
+    @Override
+    public Session doDelete(String id) {
+        final Session session = super.doDelete(id);
+        index(id);
+        return session;
+    }
+
+    /**
+     * Adds or removes the id as the map now has it or not. Called after each change of the map, so
+     * the last call for an id sees its last change.
+     */
+    private void index(String id) {
+        synchronized (positions) {
+            if (_sessions.containsKey(id)) {
+                if (positions.putIfAbsent(id, size) == null) {
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size * 2);
+                    }
+                    ids[size++] = id;
+                }
+            } else {
+                final Integer position = positions.remove(id);
+                if (position != null) {
+                    // The last id fills the hole.
+                    final String last = ids[--size];
+                    ids[size] = null;
+                    if (position < size) {
+                        ids[position] = last;
+                        positions.put(last, position);
+                    }
+                }
+            }
+        }
+    }
+
+    private String[] sample() {
+        final String[] sample = new String[SAMPLE_SIZE];
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        synchronized (positions) {
+            if (size > 0) {
+                for (int i = 0; i < sample.length; i++) {
+                    sample[i] = ids[random.nextInt(size)];
+                }
+            }
+        }
+        return sample;
+    }
+
+    /** Evicts until the cache fits, never the session just added, which is about to be used. */
+    private void shrink(String added) {
+        while (_sessions.size() > maxSessions) {
+            CachedSession victim = null;
+            for (String id : sample()) {
+                // Null if the cache emptied meanwhile.
+                final Session session = id == null || id.equals(added) ? null : _sessions.get(id);
+                if (session instanceof CachedSession && session.getRequests() <= 0) {
+                    final CachedSession candidate = (CachedSession) session;
+                    if (victim == null || candidate.accessed() < victim.accessed()) {
+                        victim = candidate;
+                    }
+                }
+            }
+            if (victim == null || !evict(victim)) {
+                return;
+            }
+        }
+    }
+
+    private boolean evict(CachedSession session) {
+        final Lock lock = session.lock();
+        try {
+            if (!session.isResident() || session.getRequests() > 0) {
+                return false;
+            }
+            if (isSaveOnInactiveEviction() && _sessionDataStore != null) {
+                try {
+                    if (_sessionDataStore.isPassivating()) {
+                        session.willPassivate();
+                    }
+                    // Fake being dirty to force the write.
+                    session.data().setDirty(true);
+                    _sessionDataStore.store(session.getId(), session.data());
+                } catch (Exception e) {
+                    LOG.warn("Passivation of session {} failed", session.getId(), e);
+                }
+            }
+            doDelete(session.getId());
+            session.setResident(false);
+            evicted.increment();
+            return true;
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Lets the cache see the data of its sessions. */
+    private static final class CachedSession extends Session {
+
+        CachedSession(SessionHandler handler, SessionData data) {
+            super(handler, data);
+        }
+
+        CachedSession(SessionHandler handler, HttpServletRequest request, SessionData data) {
+            super(handler, request, data);
+        }
+
+        SessionData data() {
+            return getSessionData();
+        }
+
+        long accessed() {
+            return getSessionData().getAccessed();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Thread pool whose queue holds at most a given number of tasks; a task that finds it full is
+ * rejected, and Jetty closes the connection it was for. When asked to, the pool also notes how long
+ * each task waited, so that {@link LoadSheddingHandler} can turn away the requests that waited too
+ * long for a thread and {@link ThreadPoolTuner} can size the pool by the mean wait.
+ */
+@ManagedObject("Thread pool with a bounded queue")
+class BoundedThreadPool extends QueuedThreadPool {
+
+    // The queue grows in steps of this size up to its capacity.
+    private static final int QUEUE_GROWTH = 64;
+
+    // How long the task the current thread runs waited in the queue, in nanoseconds.
+    private static final ThreadLocal<long[]> QUEUE_WAIT =
+            ThreadLocal.withInitial(() -> new long[1]);
+
+    private final boolean timed;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder queueWait = new LongAdder();
+
+    private final LongAdder timedTasks = new LongAdder();
+
+    /**
+     * @param idleTimeout the milliseconds after which an idle thread above the minimum stops
+     * @param reservedThreads the threads kept ready to run a task at once, or -1 for a number
+     *     derived from the CPUs and the maximum
+     * @param queueSize the capacity of the queue, or -1 for no bound
+     * @param timed whether to note how long the tasks wait
+     */
+    BoundedThreadPool(
+            int maxThreads,
+            int minThreads,
+            int idleTimeout,
+            int reservedThreads,
+            int queueSize,
+            boolean timed) {
+        super(
+                maxThreads,
+                minThreads,
+                idleTimeout,
+                reservedThreads,
+                queueSize > 0
+                        ? new BlockingArrayQueue<>(
+                                Math.min(queueSize, QUEUE_GROWTH), QUEUE_GROWTH, queueSize)
+                        : null,
+                null);
+        this.timed = timed;
+    }
+
+    /**
+     * Returns how long the task that runs on the current thread waited in the queue of a pool, in
+     * nanoseconds, and forgets it, so that only the first request the task handles is judged by it.
+     */
+    static long takeQueueWait() {
+        final long[] wait = QUEUE_WAIT.get();
+        final long nanos = wait[0];
+        wait[0] = 0;
+        return nanos;
+    }
+
+    @ManagedAttribute("Tasks rejected because the queue was full")
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /** Returns the nanoseconds the timed tasks waited in the queue in total. */
+    long getQueueWait() {
+        return queueWait.sum();
+    }
+
+    /** Returns the number of timed tasks that left the queue. */
+    long getTimedTasks() {
+        return timedTasks.sum();
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        try {
+            super.execute(timed ? new Timed(job) : job);
+        } catch (RejectedExecutionException e) {
+            if (isRunning()) {
+                rejected.increment();
+            }
+            throw e;
+        }
+    }
+
+    private final class Timed implements Runnable {
+
+        private final Runnable job;
+
+        private final long queued = System.nanoTime();
+
+        Timed(Runnable job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            final long[] wait = QUEUE_WAIT.get();
+            wait[0] = System.nanoTime() - queued;
+            queueWait.add(wait[0]);
+            timedTasks.increment();
+            try {
+                job.run();
+            } finally {
+                wait[0] = 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return job.toString();
+        }
+    }
+}
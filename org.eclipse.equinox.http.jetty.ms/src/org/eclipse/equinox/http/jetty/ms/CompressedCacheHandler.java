@@ -0,0 +1,309 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHttpOutputInterceptor;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Keeps the gzip bodies of responses with a strong ETag, so that a hot response is compressed once
+ * instead of on every hit. Sits right behind the {@link GzipHandler}: on a hit the servlet still
+ * runs, but its output is dropped and the cached body is sent with the headers the gzip stage would
+ * have set. On a miss the body the gzip stage produces is kept as it is sent.
+ */
+@ManagedObject("Cache of compressed response bodies")
+class CompressedCacheHandler extends HandlerWrapper {
+
+    private final GzipHandler gzipHandler;
+
+    private final long maxBytes;
+
+    private final int maxEntrySize;
+
+    // Guarded by itself; in access order, so the eldest entry is the least recently used.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    CompressedCacheHandler(GzipHandler gzipHandler, long maxBytes, int maxEntrySize) {
+        this.gzipHandler = gzipHandler;
+        this.maxBytes = maxBytes;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @Override
+    public void handle(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        final HttpOutput out = baseRequest.getResponse().getHttpOutput();
+        // The gzip stage only installs its interceptor when the client accepts gzip.
+        if (HttpMethod.GET.is(request.getMethod())
+                && out.getInterceptor() instanceof GzipHttpOutputInterceptor) {
+            // Replaces the interceptor of the gzip stage with one that hands its output over.
+            out.setInterceptor(
+                    new CachingInterceptor(
+                            baseRequest, out.getInterceptor().getNextInterceptor()));
+        }
+        super.handle(target, baseRequest, request, response);
+    }
+
+    @ManagedAttribute("Responses served from the cache")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("Responses with a strong ETag that were not cached")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("Number of cached bodies")
+    public int getEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute("Bytes of cached bodies")
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private Entry get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            final Entry old = entries.put(key, entry);
+            if (old != null) {
+                bytes -= old.body.length;
+            }
+            bytes += entry.body.length;
+            for (Iterator<Entry> it = entries.values().iterator();
+                    bytes > maxBytes && it.hasNext(); ) {
+                bytes -= it.next().body.length;
+                it.remove();
+            }
+        }
+    }
+
+    private static boolean isStrong(String etag) {
+        return etag != null && !etag.startsWith("W/"); // $NON-NLS-1$
+    }
+
+    private static String etagGzip(String etag) {
+        final int end = etag.length() - 1;
+        return etag.charAt(end) == '"'
+                ? etag.substring(0, end) + CompressedContentFormat.GZIP._etag + '"'
+                : etag + CompressedContentFormat.GZIP._etag;
+    }
+
+    private static final class Entry {
+
+        final byte[] body;
+
+        final String vary;
+
+        Entry(byte[] body, String vary) {
+            this.body = body;
+            this.vary = vary;
+        }
+    }
+
+    /**
+     * Sits in front of the gzip interceptor and decides on the first write. The gzip interceptor
+     * writes to a {@link Compressed} interceptor, which copies its output.
+     */
+    private class CachingInterceptor implements HttpOutput.Interceptor {
+
+        private final Request request;
+
+        private final HttpOutput.Interceptor next;
+
+        private boolean decided;
+
+        private String key;
+
+        private Entry hit;
+
+        // Uncompressed bytes written so far.
+        private long length;
+
+        // Gzip body of a cacheable response, null once it is known not to fit.
+        private ByteArrayOutputStream copy;
+
+        CachingInterceptor(Request request, HttpOutput.Interceptor channel) {
+            this.request = request;
+            // As the gzip stage creates it, but with its output copied.
+            this.next =
+                    new GzipHttpOutputInterceptor(
+                            gzipHandler,
+                            gzipHandler.getIncludedAgentPatterns().length > 0
+                                    ? GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING_USER_AGENT
+                                    : GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING,
+                            request.getHttpChannel(),
+                            new Compressed(channel),
+                            gzipHandler.isSyncFlush());
+        }
+
+        @Override
+        public HttpOutput.Interceptor getNextInterceptor() {
+            return next;
+        }
+
+        @Override
+        public boolean isOptimizedForDirectBuffers() {
+            return false;
+        }
+
+        @Override
+        public void write(ByteBuffer content, boolean complete, Callback callback) {
+            if (!decided) {
+                decided = true;
+                decide();
+            }
+            if (hit != null) {
+                // Drop the servlet output and send the cached body once the response completes.
+                content.position(content.limit());
+                if (complete) {
+                    next.write(ByteBuffer.wrap(hit.body), true, callback);
+                } else {
+                    callback.succeeded();
+                }
+                return;
+            }
+            length += content.remaining();
+            if (length > maxEntrySize) {
+                copy = null;
+            }
+            next.write(content, complete, callback);
+        }
+
+        private void decide() {
+            final Response response = request.getResponse();
+            final String etag = response.getHttpFields().get(HttpHeader.ETAG);
+            if (response.getStatus() != HttpServletResponse.SC_OK
+                    || !isStrong(etag)
+                    || response.getHttpFields().contains(HttpHeader.CONTENT_ENCODING)
+                    || !acceptsGzip()) {
+                return;
+            }
+            key = etag + ' ' + request.getRequestURI();
+            hit = get(key);
+            if (hit != null) {
+                hits.increment();
+                final HttpFields fields = response.getHttpFields();
+                fields.put(CompressedContentFormat.GZIP._contentEncoding);
+                if (hit.vary != null) {
+                    fields.addCSV(HttpHeader.VARY, hit.vary);
+                }
+                fields.put(HttpHeader.ETAG, etagGzip(etag));
+                // The length is taken from the single write of the cached body.
+                response.setContentLength(-1);
+            } else {
+                misses.increment();
+                copy = new ByteArrayOutputStream();
+            }
+        }
+
+        /** Asks the gzip stage, which checks Accept-Encoding and the user agent on commit. */
+        private boolean acceptsGzip() {
+            final Deflater deflater = gzipHandler.getDeflater(request, -1);
+            if (deflater == null) {
+                return false;
+            }
+            gzipHandler.recycle(deflater);
+            return true;
+        }
+
+        private void store() {
+            final HttpFields fields = request.getResponse().getHttpFields();
+            // Only cache what the gzip stage decided to compress.
+            if (!CompressedContentFormat.GZIP._encoding.equals(
+                    fields.get(HttpHeader.CONTENT_ENCODING))) {
+                return;
+            }
+            final ByteArrayOutputStream body = copy;
+            copy = null;
+            put(key, new Entry(body.toByteArray(), fields.get(HttpHeader.VARY)));
+        }
+
+        /** Behind the gzip interceptor; copies the body it sends, before the buffer is reused. */
+        private class Compressed implements HttpOutput.Interceptor {
+
+            private final HttpOutput.Interceptor next;
+
+            Compressed(HttpOutput.Interceptor next) {
+                this.next = next;
+            }
+
+            @Override
+            public HttpOutput.Interceptor getNextInterceptor() {
+                return next;
+            }
+
+            @Override
+            public boolean isOptimizedForDirectBuffers() {
+                return next.isOptimizedForDirectBuffers();
+            }
+
+            @Override
+            public void write(ByteBuffer content, boolean complete, Callback callback) {
+                if (copy != null) {
+                    try {
+                        BufferUtil.writeTo(content.duplicate(), copy);
+                    } catch (IOException e) {
+                        copy = null;
+                    }
+                }
+                next.write(content, complete, callback);
+                if (complete && copy != null) {
+                    store();
+                }
+            }
+        }
+    }
+}
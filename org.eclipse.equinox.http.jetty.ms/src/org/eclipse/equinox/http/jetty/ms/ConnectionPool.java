@@ -0,0 +1,393 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.jdbc.DataSourceFactory;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * Minimal pool of JDBC connections for the session store. At most a given number of connections
+ * are open; closing a borrowed connection returns it to the pool, and one that was idle for a
+ * while is validated before it is handed out again. The most recently returned connection is
+ * reused first, so that the others can idle.
+ *
+ * <p>New connections come from the driver of the DataSourceFactory service registered for the
+ * driver class, if any, or else from the one DriverManager has for the URL. The service is tracked
+ * from the first connection until the pool stops. Each connection remembers the service it came
+ * from, and is closed rather than pooled once that service has gone away.
+ */
+@ManagedObject("Pool of JDBC connections")
+class ConnectionPool extends AbstractLifeCycle implements DataSource {
+
+    private static final long VALIDATE_AFTER = TimeUnit.SECONDS.toMillis(30);
+
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    // Null without a driver class.
+    private final ServiceTracker<DataSourceFactory, DataSourceFactory> factories;
+
+    private boolean tracking;
+
+    // The tracked services, whose connections may be pooled.
+    private final Set<DataSourceFactory> available = ConcurrentHashMap.newKeySet();
+
+    private final String url;
+
+    private final Properties info;
+
+    private final int maxSize;
+
+    private final long timeout;
+
+    private final Semaphore permits;
+
+    private final BlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+
+    private final LongAdder opened = new LongAdder();
+
+    private final LongAdder waits = new LongAdder();
+
+    private volatile boolean closed;
+
+    ConnectionPool(
+            BundleContext context,
+            String driverClass,
+            String url,
+            Properties info,
+            int maxSize,
+            long timeout)
+            throws SQLException {
+        if (driverClass != null) {
+            final Filter filter;
+            try {
+                filter =
+                        context.createFilter(
+                                "(&(" // $NON-NLS-1$
+                                        + Constants.OBJECTCLASS
+                                        + "=" // $NON-NLS-1$
+                                        + DataSourceFactory.class.getName()
+                                        + ")(" // $NON-NLS-1$
+                                        + DataSourceFactory.OSGI_JDBC_DRIVER_CLASS
+                                        + "=" // $NON-NLS-1$
+                                        + driverClass
+                                        + "))"); // $NON-NLS-1$
+            } catch (InvalidSyntaxException e) {
+                throw new SQLException(e);
+            }
+            factories =
+                    new ServiceTracker<DataSourceFactory, DataSourceFactory>(
+                            context, filter, null) {
+                        @Override
+                        public DataSourceFactory addingService(
+                                ServiceReference<DataSourceFactory> reference) {
+                            final DataSourceFactory service = super.addingService(reference);
+                            if (service != null) {
+                                available.add(service);
+                            }
+                            return service;
+                        }
+
+                        @Override
+                        public void removedService(
+                                ServiceReference<DataSourceFactory> reference,
+                                DataSourceFactory service) {
+                            // Not handed out again once their driver is gone.
+                            available.remove(service);
+                            closeIdle(service);
+                            super.removedService(reference, service);
+                        }
+                    };
+        } else {
+            factories = null;
+        }
+        this.url = url;
+        this.info = info;
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Returns the DataSourceFactory service registered for the driver class, or null if the driver
+     * comes from DriverManager.
+     */
+    private DataSourceFactory factory() {
+        if (factories == null) {
+            return null;
+        }
+        synchronized (factories) {
+            if (!tracking) {
+                factories.open();
+                tracking = true;
+            }
+        }
+        return factories.getService();
+    }
+
+    /** Returns whether connections from {@code factory} may still be pooled. */
+    private boolean isAvailable(DataSourceFactory factory) {
+        return factory == null || available.contains(factory);
+    }
+
+    @ManagedAttribute("Maximum number of connections")
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @ManagedAttribute("Connections in use")
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    @ManagedAttribute("Open connections not in use")
+    public int getIdle() {
+        return idle.size();
+    }
+
+    @ManagedAttribute("Connections opened")
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    @ManagedAttribute("Borrows that had to wait for a connection")
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!permits.tryAcquire()) {
+            waits.increment();
+            try {
+                if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException(
+                            "No connection available within " + timeout + "ms"); // $NON-NLS-1$
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+        }
+        try {
+            return borrow();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private Connection borrow() throws SQLException {
+        final long now = System.currentTimeMillis();
+        for (Idle candidate; (candidate = idle.pollFirst()) != null; ) {
+            if (isAvailable(candidate.factory)
+                    && (now - candidate.since < VALIDATE_AFTER
+                            || candidate.connection.isValid(VALIDATION_TIMEOUT))) {
+                return wrap(candidate.connection, candidate.factory);
+            }
+            closeQuietly(candidate.connection);
+        }
+        final DataSourceFactory factory = factory();
+        final Driver driver =
+                factory != null ? factory.createDriver(null) : DriverManager.getDriver(url);
+        final Connection connection = driver.connect(url, info);
+        if (connection == null) {
+            throw new SQLException("The driver does not accept " + url); // $NON-NLS-1$
+        }
+        opened.increment();
+        return wrap(connection, factory);
+    }
+
+    private Connection wrap(Connection connection, DataSourceFactory factory) {
+        return (Connection)
+                Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[] {Connection.class},
+                        new Borrowed(connection, factory));
+    }
+
+    private void giveBack(Connection connection, DataSourceFactory factory) {
+        try {
+            if (!connection.isClosed() && !closed && isAvailable(factory)) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                idle.offerFirst(new Idle(connection, factory, System.currentTimeMillis()));
+                return;
+            }
+        } catch (SQLException e) {
+            // Broken, don't reuse it.
+        } finally {
+            permits.release();
+        }
+        closeQuietly(connection);
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        closed = false;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        closed = true;
+        closeIdle();
+        if (factories != null) {
+            synchronized (factories) {
+                if (tracking) {
+                    factories.close();
+                    tracking = false;
+                }
+            }
+        }
+    }
+
+    private void closeIdle() {
+        for (Idle candidate; (candidate = idle.pollFirst()) != null; ) {
+            closeQuietly(candidate.connection);
+        }
+    }
+
+    /** Closes the idle connections that came from {@code factory}. */
+    private void closeIdle(DataSourceFactory factory) {
+        for (Idle candidate : idle) {
+            if (candidate.factory == factory && idle.remove(candidate)) {
+                closeQuietly(candidate.connection);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // Nothing left to do with it.
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {}
+
+    @Override
+    public void setLoginTimeout(int seconds) {}
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper of " + iface); // $NON-NLS-1$
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private static final class Idle {
+
+        final Connection connection;
+
+        // Null if it came from DriverManager.
+        final DataSourceFactory factory;
+
+        final long since;
+
+        Idle(Connection connection, DataSourceFactory factory, long since) {
+            this.connection = connection;
+            this.factory = factory;
+            this.since = since;
+        }
+    }
+
+    /** A connection handed out; closing it gives the real one back. */
+    private final class Borrowed implements InvocationHandler {
+
+        private Connection connection;
+
+        private final DataSourceFactory factory;
+
+        Borrowed(Connection connection, DataSourceFactory factory) {
+            this.connection = connection;
+            this.factory = factory;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close": // $NON-NLS-1$
+                    if (connection != null) {
+                        final Connection returned = connection;
+                        connection = null;
+                        giveBack(returned, factory);
+                    }
+                    return null;
+                case "isClosed": // $NON-NLS-1$
+                    return connection == null;
+                case "equals": // $NON-NLS-1$
+                    return proxy == args[0];
+                case "hashCode": // $NON-NLS-1$
+                    return System.identityHashCode(proxy);
+                case "toString": // $NON-NLS-1$
+                    return "Pooled " + connection; // $NON-NLS-1$
+                default:
+                    if (connection == null) {
+                        throw new SQLException("Connection is closed"); // $NON-NLS-1$
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
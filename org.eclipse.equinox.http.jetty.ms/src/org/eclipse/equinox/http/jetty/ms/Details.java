@@ -13,7 +13,16 @@
  */
 package org.eclipse.equinox.http.jetty.ms;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import org.osgi.framework.BundleContext;
 
 class Details {
@@ -130,6 +139,27 @@ class Details {
         return String.valueOf(value);
     }
 
+    /**
+     * Returns the values of a list setting, given either as an array, a collection or a comma
+     * separated string.
+     */
+    static String[] getStrings(Dictionary<String, ?> dictionary, String key, String[] dflt) {
+        final Object value = dictionary.get(key);
+        final List<String> values = new ArrayList<>();
+        if (value instanceof String[]) {
+            values.addAll(Arrays.asList((String[]) value));
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                values.add(String.valueOf(element));
+            }
+        } else if (value != null) {
+            values.addAll(Arrays.asList(String.valueOf(value).split(","))); // $NON-NLS-1$
+        }
+        values.replaceAll(String::trim);
+        values.removeIf(String::isEmpty);
+        return values.isEmpty() ? dflt : values.toArray(new String[0]);
+    }
+
     static String getStringProp(BundleContext dictionary, String key, String dflt) {
         return getString(dictionary, JettyConstants.PROPERTY_PREFIX + key, dflt);
     }
@@ -137,4 +167,26 @@ class Details {
     static String getStringProp(Dictionary<String, ?> dictionary, String key, String dflt) {
         return getString(dictionary, JettyConstants.PROPERTY_PREFIX + key, dflt);
     }
+
+    static Dictionary<String, Object> copy(Dictionary<String, ?> dictionary) {
+        final Dictionary<String, Object> copy = new Hashtable<>();
+        for (Enumeration<String> keys = dictionary.keys(); keys.hasMoreElements(); ) {
+            final String key = keys.nextElement();
+            copy.put(key, dictionary.get(key));
+        }
+        return copy;
+    }
+
+    /** Returns the keys whose values differ, including keys present in only one dictionary. */
+    static Set<String> changedKeys(Dictionary<String, ?> oldDict, Dictionary<String, ?> newDict) {
+        final Set<String> keys = new HashSet<>();
+        for (Enumeration<String> e = oldDict.keys(); e.hasMoreElements(); ) {
+            keys.add(e.nextElement());
+        }
+        for (Enumeration<String> e = newDict.keys(); e.hasMoreElements(); ) {
+            keys.add(e.nextElement());
+        }
+        keys.removeIf(key -> Objects.deepEquals(oldDict.get(key), newDict.get(key)));
+        return keys;
+    }
 }
@@ -18,14 +18,16 @@ import org.eclipse.jetty.util.log.*;
 // NOTE: This class simply allows us to override the StdErrLog built into jetty
 class EquinoxStdErrLog implements Logger {
 
-    private static int DEBUG = 0;
-    private static int INFO = 1;
-    private static int WARN = 2;
-    private static int ERROR = 3;
-    private static int OFF = 4;
+    static final int DEBUG = 0;
+    static final int INFO = 1;
+    static final int WARN = 2;
+    static final int ERROR = 3;
+    private static final int OFF = 4;
 
     private static volatile int threshold = WARN;
     private static EquinoxStdErrLog root;
+    // While set, events go to the async log instead of the real loggers.
+    private static volatile AsyncLog asyncLog;
 
     private final Logger realLogger;
     private final String localName;
@@ -47,6 +49,16 @@ class EquinoxStdErrLog implements Logger {
         }
     }
 
+    /** Sends all loggers to {@code log}, or back to their real loggers if null. */
+    static void setAsyncLog(AsyncLog log) {
+        asyncLog = log;
+    }
+
+    /** Returns the log all loggers go to, or null if they go to their real loggers. */
+    static AsyncLog getAsyncLog() {
+        return asyncLog;
+    }
+
     private static int parseThresholdProperty(String property) {
         if (property == null) return WARN;
 
@@ -78,7 +90,11 @@ class EquinoxStdErrLog implements Logger {
     public org.eclipse.jetty.util.log.Logger getLogger(String name) {
         if ((name == null && this.localName == null)
                 || (name != null && name.equals(this.localName))) return this;
-        return new EquinoxStdErrLog(name, realLogger.getLogger(name));
+        // Not realLogger.getLogger(name): StdErrLog would register the child with Log, which
+        // would then hand out the child itself and bypass the threshold and the async log.
+        final String fullName =
+                localName == null || localName.isEmpty() ? name : localName + '.' + name;
+        return new EquinoxStdErrLog(fullName, new StdErrLog(fullName));
     }
 
     // debugSOO = slf4j.getMethod("debug", new Class[]{String.class,Object.class,Object.class});
@@ -86,7 +102,7 @@ class EquinoxStdErrLog implements Logger {
     public void debug(String msg, Object... arg0) {
         if (threshold > DEBUG) return;
 
-        realLogger.debug(msg, arg0);
+        if (!async(DEBUG, msg, arg0, null)) realLogger.debug(msg, arg0);
     }
 
     // debugST = slf4j.getMethod("debug", new Class[]{String.class,Throwable.class});
@@ -94,7 +110,7 @@ class EquinoxStdErrLog implements Logger {
     public void debug(String msg, Throwable th) {
         if (threshold > DEBUG) return;
 
-        realLogger.debug(msg, th);
+        if (!async(DEBUG, msg, null, th)) realLogger.debug(msg, th);
     }
 
     // infoSOO = slf4j.getMethod("info", new Class[]{String.class,Object.class,Object.class});
@@ -102,7 +118,7 @@ class EquinoxStdErrLog implements Logger {
     public void info(String msg, Object... arg0) {
         if (threshold > INFO) return;
 
-        realLogger.info(msg, arg0);
+        if (!async(INFO, msg, arg0, null)) realLogger.info(msg, arg0);
     }
 
     // warnSOO = slf4j.getMethod("warn", new Class[]{String.class,Object.class,Object.class});
@@ -110,7 +126,7 @@ class EquinoxStdErrLog implements Logger {
     public void warn(String msg, Object... arg0) {
         if (threshold > WARN) return;
 
-        realLogger.warn(msg, arg0);
+        if (!async(WARN, msg, arg0, null)) realLogger.warn(msg, arg0);
     }
 
     // warnST = slf4j.getMethod("warn", new Class[]{String.class,Throwable.class});
@@ -119,16 +135,16 @@ class EquinoxStdErrLog implements Logger {
         if (threshold > WARN) return;
 
         // we treat RuntimeException and Error as an error
-        if (th instanceof RuntimeException || th instanceof Error)
-            realLogger.warn("ERROR:  " + msg, th); // $NON-NLS-1$
-        else if (threshold != ERROR) realLogger.warn(msg, th);
+        if (th instanceof RuntimeException || th instanceof Error) error(msg, th);
+        else if (threshold != ERROR && !async(WARN, msg, null, th)) realLogger.warn(msg, th);
     }
 
     // errorST = slf4j.getMethod("error", new Class[]{String.class,Throwable.class});
     public void error(String msg, Throwable th) {
         if (threshold > ERROR) return;
 
-        realLogger.warn("ERROR:  " + msg, th); // $NON-NLS-1$
+        // The async log adds the prefix on its own thread.
+        if (!async(ERROR, msg, null, th)) realLogger.warn("ERROR:  " + msg, th); // $NON-NLS-1$
     }
 
     @Override
@@ -139,19 +155,19 @@ class EquinoxStdErrLog implements Logger {
     @Override
     public void warn(Throwable thrown) {
         if (threshold > WARN) return;
-        realLogger.warn(thrown);
+        if (!async(WARN, null, null, thrown)) realLogger.warn(thrown);
     }
 
     @Override
     public void info(Throwable thrown) {
         if (threshold > INFO) return;
-        realLogger.info(thrown);
+        if (!async(INFO, null, null, thrown)) realLogger.info(thrown);
     }
 
     @Override
     public void info(String msg, Throwable thrown) {
         if (threshold > INFO) return;
-        realLogger.info(msg, thrown);
+        if (!async(INFO, msg, null, thrown)) realLogger.info(msg, thrown);
     }
 
     @Override
@@ -167,7 +183,7 @@ class EquinoxStdErrLog implements Logger {
     @Override
     public void debug(Throwable thrown) {
         if (threshold > DEBUG) return;
-        realLogger.debug(thrown);
+        if (!async(DEBUG, null, null, thrown)) realLogger.debug(thrown);
     }
 
     @Override
@@ -179,6 +195,13 @@ class EquinoxStdErrLog implements Logger {
     @Override
     public void debug(String msg, long value) {
         if (threshold > DEBUG) return;
-        realLogger.debug(msg, value);
+        if (!async(DEBUG, msg, new Object[] {value}, null)) realLogger.debug(msg, value);
+    }
+
+    private boolean async(int level, String msg, Object[] args, Throwable thrown) {
+        final AsyncLog log = asyncLog;
+        if (log == null) return false;
+        log.log(level, realLogger.getName(), msg, args, thrown);
+        return true;
     }
 }
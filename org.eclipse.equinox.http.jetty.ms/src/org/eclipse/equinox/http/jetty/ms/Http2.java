@@ -0,0 +1,99 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.Dictionary;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+/**
+ * Creates the HTTP/2 connection factories. The jetty http2 and alpn bundles are optional imports,
+ * so this class is only loaded once HTTP/2 has been asked for; callers fall back to HTTP/1.1 on a
+ * {@link LinkageError}.
+ */
+final class Http2 {
+
+    private Http2() {}
+
+    /**
+     * Returns the factories of an https connector that negotiates h2 through ALPN and falls back to
+     * http/1.1. Throws {@link IllegalStateException} if no ALPN processor is available, which in
+     * OSGi needs jetty-alpn-java-server (or the JDK 8 variant) and a service loader mediator.
+     */
+    static ConnectionFactory[] secureFactories(
+            SslContextFactory.Server sslContextFactory,
+            HttpConfiguration https_config,
+            Dictionary<String, ?> dictionary) {
+        final HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(https_config);
+        configure(h2, dictionary, h2);
+        final HttpConnectionFactory http1 = new HttpConnectionFactory(https_config);
+        // Negotiates among the protocols of the factories that follow it on the connector.
+        final ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
+        alpn.setDefaultProtocol("http/1.1"); // $NON-NLS-1$
+        // RFC 7540 9.2.2 blacklists most CBC suites; prefer the ones h2 accepts.
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+        sslContextFactory.setUseCipherSuitesOrder(true);
+        return new ConnectionFactory[] {
+            new SslConnectionFactory(sslContextFactory, alpn.getProtocol()), alpn, h2, http1
+        };
+    }
+
+    /**
+     * Returns the h2c factory to add after the HTTP/1.1 factory of a plain connector. It serves
+     * both the HTTP/1.1 upgrade and prior-knowledge connections.
+     */
+    static ConnectionFactory cleartextFactory(
+            HttpConfiguration http_config, Dictionary<String, ?> dictionary) {
+        final HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(http_config);
+        configure(h2c, dictionary, h2c);
+        return h2c;
+    }
+
+    /**
+     * Applies the HTTP/2 settings of {@code dictionary} to the factories of a running connector.
+     * Those that are not set go back to their defaults; sessions already open keep theirs.
+     */
+    static void update(AbstractConnector connector, Dictionary<String, ?> dictionary) {
+        final AbstractHTTP2ServerConnectionFactory defaults =
+                new HTTP2CServerConnectionFactory(new HttpConfiguration());
+        for (ConnectionFactory factory : connector.getConnectionFactories()) {
+            if (factory instanceof AbstractHTTP2ServerConnectionFactory) {
+                configure((AbstractHTTP2ServerConnectionFactory) factory, dictionary, defaults);
+            }
+        }
+    }
+
+    private static void configure(
+            AbstractHTTP2ServerConnectionFactory factory,
+            Dictionary<String, ?> dictionary,
+            AbstractHTTP2ServerConnectionFactory defaults) {
+        factory.setMaxConcurrentStreams(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.HTTP2_MAXCONCURRENTSTREAMS,
+                        defaults.getMaxConcurrentStreams()));
+        factory.setInitialSessionRecvWindow(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.HTTP2_INITIALSESSIONRECVWINDOW,
+                        defaults.getInitialSessionRecvWindow()));
+        factory.setInitialStreamRecvWindow(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.HTTP2_INITIALSTREAMRECVWINDOW,
+                        defaults.getInitialStreamRecvWindow()));
+        factory.setMaxDynamicTableSize(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.HTTP2_HEADERTABLESIZE,
+                        defaults.getMaxDynamicTableSize()));
+    }
+}
@@ -0,0 +1,74 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedServiceFactory;
+
+/** Runs one {@link JettyServer} for each configuration of the factory PID. */
+class HttpServerManager implements ManagedServiceFactory {
+
+    private static final Logger LOG = Log.getLogger(HttpServerManager.class);
+
+    private final BundleContext ctx;
+
+    private final SharedResources sharedResources;
+
+    private final Map<String, JettyServer> servers = new ConcurrentHashMap<>();
+
+    HttpServerManager(BundleContext ctx, SharedResources sharedResources) {
+        this.ctx = ctx;
+        this.sharedResources = sharedResources;
+    }
+
+    @Override
+    public String getName() {
+        return "Equinox Jetty-based Http Service Factory"; // $NON-NLS-1$
+    }
+
+    /**
+     * Updates the server of {@code pid} under its own lock, so that a server that takes long to
+     * start does not hold up the others.
+     */
+    @Override
+    public void updated(String pid, Dictionary<String, ?> properties)
+            throws ConfigurationException {
+        while (true) {
+            final JettyServer server =
+                    servers.computeIfAbsent(
+                            pid, key -> new JettyServer(ctx, key, sharedResources));
+            synchronized (server) {
+                // Unless deleted meanwhile. Once past here, a deletion waits in stop() for this
+                // update, so the server it stops is not left running.
+                if (servers.get(pid) == server) {
+                    server.updated(properties);
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleted(String pid) {
+        final JettyServer server = servers.remove(pid);
+        if (server != null) {
+            try {
+                server.stop();
+            } catch (Exception e) {
+                LOG.warn("Can't stop http server " + pid, e); // $NON-NLS-1$
+            }
+        }
+    }
+
+    void shutdown() {
+        for (String pid : new ArrayList<>(servers.keySet())) {
+            deleted(pid);
+        }
+    }
+}
@@ -63,29 +63,671 @@ final class JettyConstants {
     static final String HTTP_MINTHREADS = "http.minThreads"; // $NON-NLS-1$
 
     /**
-     * @deprecated
+     * name="http.virtualThreads" type="Boolean" (default: false) <br>
+     * (run servlet requests on virtual threads when the JVM supports them; selectors and
+     * acceptors stay on the thread pool, and servlets that start async keep their request on
+     * the virtual thread until they complete it)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_VIRTUALTHREADS = "http.virtualThreads"; // $NON-NLS-1$
+
+    /**
+     * name="http.queueSize" type="Integer" (default: -1 -- unbounded) <br>
+     * (tasks that may wait for a thread of the pool. A task that finds the queue full is rejected
+     * and the connection it was for is closed. Not with shared.resources)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_QUEUESIZE = "http.queueSize"; // $NON-NLS-1$
+
+    /**
+     * name="http.maxQueueWait" type="Long" (default: -1 -- no limit) <br>
+     * (milliseconds a request may wait for a thread of the pool; one that waited longer is answered
+     * 503 with a Retry-After header. Not with shared.resources)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_MAXQUEUEWAIT = "http.maxQueueWait"; // $NON-NLS-1$
+
+    /**
+     * name="http.retryAfter" type="Integer" (default: 1) <br>
+     * (seconds of the Retry-After header of the requests http.maxQueueWait rejects)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_RETRYAFTER = "http.retryAfter"; // $NON-NLS-1$
+
+    /**
+     * name="http.threadIdleTimeout" type="Integer" (default: 60000) <br>
+     * (milliseconds after which an idle thread above http.minThreads stops. Not with
+     * shared.resources)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_THREADIDLETIMEOUT = "http.threadIdleTimeout"; // $NON-NLS-1$
+
+    /**
+     * name="http.reservedThreads" type="Integer" (default: -1 -- derived from the number of CPUs)
+     * <br>
+     * (threads kept spinning to run a task without a hand-off through the queue; 0 for none. Not
+     * with shared.resources)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_RESERVEDTHREADS = "http.reservedThreads"; // $NON-NLS-1$
+
+    /**
+     * name="http.adaptive" type="Boolean" (default: false) <br>
+     * (move the maximum size of the thread pool between http.minThreads and http.maxThreads by the
+     * time tasks wait for a thread. Not with shared.resources)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_ADAPTIVE = "http.adaptive"; // $NON-NLS-1$
+
+    /**
+     * name="http.adaptive.period" type="Integer" (default: 1000 -- milliseconds between two
+     * decisions)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_ADAPTIVE_PERIOD = "http.adaptive.period"; // $NON-NLS-1$
+
+    /**
+     * name="http.adaptive.targetQueueWait" type="Integer" (default: 10) <br>
+     * (milliseconds of mean queue wait in a period above which the pool grows; it may shrink below
+     * half of it)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_ADAPTIVE_TARGETQUEUEWAIT =
+            "http.adaptive.targetQueueWait"; // $NON-NLS-1$
+
+    /**
+     * name="http.adaptive.shrinkAfter" type="Integer" (default: 5) <br>
+     * (periods in a row with little queue wait and less than half of the threads busy before the
+     * pool shrinks)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_ADAPTIVE_SHRINKAFTER = "http.adaptive.shrinkAfter"; // $NON-NLS-1$
+
+    /**
+     * name="http.acceptors" type="Integer" (default: -1 -- derived from the number of CPUs) <br>
+     * (acceptor threads per connector)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_ACCEPTORS = "http.acceptors"; // $NON-NLS-1$
+
+    /**
+     * name="http.selectors" type="Integer" (default: -1 -- derived from the number of CPUs) <br>
+     * (selector threads per connector)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_SELECTORS = "http.selectors"; // $NON-NLS-1$
+
+    /**
+     * name="http.acceptQueueSize" type="Integer" (default: 0 -- operating system default)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_ACCEPTQUEUESIZE = "http.acceptQueueSize"; // $NON-NLS-1$
+
+    /**
+     * name="http.reuseAddress" type="Boolean" (default: true)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_REUSEADDRESS = "http.reuseAddress"; // $NON-NLS-1$
+
+    /**
+     * name="http.idleTimeout" type="Integer" (default: 30000 -- connection idle timeout in
+     * milliseconds, for both connectors)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_IDLETIMEOUT = "http.idleTimeout"; // $NON-NLS-1$
+
+    /**
+     * name="http.outputBufferSize" type="Integer" (default: 32768)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_OUTPUTBUFFERSIZE = "http.outputBufferSize"; // $NON-NLS-1$
+
+    /**
+     * name="http.requestHeaderSize" type="Integer" (default: 8192)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_REQUESTHEADERSIZE = "http.requestHeaderSize"; // $NON-NLS-1$
+
+    /**
+     * name="http.maxConnections" type="Integer" (default: -1 -- no limit) <br>
+     * (open connections per connector; at the limit the connector stops accepting until one
+     * closes)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_MAXCONNECTIONS = "http.maxConnections"; // $NON-NLS-1$
+
+    /**
+     * name="http.acceptRate" type="Integer" (default: -1 -- no limit) <br>
+     * (connections per second each connector accepts; above it accepting pauses until the rate
+     * drops)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_ACCEPTRATE = "http.acceptRate"; // $NON-NLS-1$
+
+    /**
+     * name="lowresources.enabled" type="Boolean" (default: false) <br>
+     * (check periodically whether the server is low on threads or memory, and while it is, close
+     * idle connections sooner)
+     *
+     * @since 1.6
+     */
+    static final String LOWRESOURCES_ENABLED = "lowresources.enabled"; // $NON-NLS-1$
+
+    /**
+     * name="lowresources.period" type="Integer" (default: 1000 -- milliseconds between checks)
+     *
+     * @since 1.6
+     */
+    static final String LOWRESOURCES_PERIOD = "lowresources.period"; // $NON-NLS-1$
+
+    /**
+     * name="lowresources.idleTimeout" type="Integer" (default: 1000) <br>
+     * (connection idle timeout in milliseconds while resources are low)
+     *
+     * @since 1.6
+     */
+    static final String LOWRESOURCES_IDLETIMEOUT = "lowresources.idleTimeout"; // $NON-NLS-1$
+
+    /**
+     * name="lowresources.maxMemory" type="Long" (default: 0 -- memory is not checked) <br>
+     * (bytes of used heap above which resources are low)
+     *
+     * @since 1.6
+     */
+    static final String LOWRESOURCES_MAXMEMORY = "lowresources.maxMemory"; // $NON-NLS-1$
+
+    /**
+     * name="lowresources.threads" type="Boolean" (default: true) <br>
+     * (resources are low while the thread pool has no idle thread and cannot grow)
+     *
+     * @since 1.6
+     */
+    static final String LOWRESOURCES_THREADS = "lowresources.threads"; // $NON-NLS-1$
+
+    /**
+     * name="http.h2c" type="Boolean" (default: false) <br>
+     * (serve cleartext HTTP/2 on the http connector, by upgrade or prior knowledge)
+     *
+     * @since 1.6
+     */
+    static final String HTTP_H2C = "http.h2c"; // $NON-NLS-1$
+
+    /**
+     * name="https.http2" type="Boolean" (default: false) <br>
+     * (negotiate h2 through ALPN on the https connector; needs an ALPN processor bundle)
+     *
+     * @since 1.6
+     */
+    static final String HTTPS_HTTP2 = "https.http2"; // $NON-NLS-1$
+
+    /**
+     * name="http2.maxConcurrentStreams" type="Integer" (default: 128)
+     *
+     * @since 1.6
+     */
+    static final String HTTP2_MAXCONCURRENTSTREAMS = "http2.maxConcurrentStreams"; // $NON-NLS-1$
+
+    /**
+     * name="http2.initialSessionRecvWindow" type="Integer" (default: 1048576)
+     *
+     * @since 1.6
+     */
+    static final String HTTP2_INITIALSESSIONRECVWINDOW =
+            "http2.initialSessionRecvWindow"; // $NON-NLS-1$
+
+    /**
+     * name="http2.initialStreamRecvWindow" type="Integer" (default: 524288)
+     *
+     * @since 1.6
+     */
+    static final String HTTP2_INITIALSTREAMRECVWINDOW =
+            "http2.initialStreamRecvWindow"; // $NON-NLS-1$
+
+    /**
+     * name="http2.headerTableSize" type="Integer" (default: 4096) <br>
+     * (HPACK dynamic table size)
+     *
+     * @since 1.6
+     */
+    static final String HTTP2_HEADERTABLESIZE = "http2.headerTableSize"; // $NON-NLS-1$
+
+    /**
+     * name="unixsocket.path" type="String" (default: none -- no Unix domain socket connector) <br>
+     * (serve HTTP/1.1 on a Unix domain socket as well, for a reverse proxy on the same host. A
+     * socket nobody listens on any more is replaced; the server fails to start if another process
+     * still listens on it. Needs the jetty unixsocket bundle and jnr-unixsocket)
+     *
+     * @since 1.6
+     */
+    static final String UNIXSOCKET_PATH = "unixsocket.path"; // $NON-NLS-1$
+
+    /**
+     * name="unixsocket.selectors" type="Integer" (default: -1 -- one) <br>
+     * (selector threads of the Unix domain socket connector, which also accept its connections)
+     *
+     * @since 1.6
+     */
+    static final String UNIXSOCKET_SELECTORS = "unixsocket.selectors"; // $NON-NLS-1$
+
+    /**
+     * name="unixsocket.acceptQueueSize" type="Integer" (default: 0 -- operating system default)
+     *
+     * @since 1.6
+     */
+    static final String UNIXSOCKET_ACCEPTQUEUESIZE = "unixsocket.acceptQueueSize"; // $NON-NLS-1$
+
+    /**
+     * name="unixsocket.proxyProtocol" type="Boolean" (default: false) <br>
+     * (connections on the Unix domain socket start with a PROXY protocol header, version 1 or 2,
+     * that gives the address of the client)
+     *
+     * @since 1.6
+     */
+    static final String UNIXSOCKET_PROXYPROTOCOL = "unixsocket.proxyProtocol"; // $NON-NLS-1$
+
+    /**
+     * name="unixsocket.forwarded" type="Boolean" (default: false) <br>
+     * (take the client address, scheme and host of requests on the Unix domain socket from their
+     * Forwarded or X-Forwarded-* headers)
+     *
+     * @since 1.6
+     */
+    static final String UNIXSOCKET_FORWARDED = "unixsocket.forwarded"; // $NON-NLS-1$
+
+    /**
+     * name="compression.enabled" type="Boolean" (default: false) <br>
+     * (gzip responses for clients that accept it)
+     *
+     * @since 1.6
+     */
+    static final String COMPRESSION_ENABLED = "compression.enabled"; // $NON-NLS-1$
+
+    /**
+     * name="compression.mimeTypes" type="String[]" (default: all but images, audio, video and
+     * archives) <br>
+     * (comma separated if given as a string)
+     *
+     * @since 1.6
+     */
+    static final String COMPRESSION_MIMETYPES = "compression.mimeTypes"; // $NON-NLS-1$
+
+    /**
+     * name="compression.minSize" type="Integer" (default: 32 -- bytes)
+     *
+     * @since 1.6
+     */
+    static final String COMPRESSION_MINSIZE = "compression.minSize"; // $NON-NLS-1$
+
+    /**
+     * name="compression.level" type="Integer" (default: -1 -- the deflater default, 1 fastest to
+     * 9 smallest)
+     *
+     * @since 1.6
+     */
+    static final String COMPRESSION_LEVEL = "compression.level"; // $NON-NLS-1$
+
+    /**
+     * name="compression.excludedPaths" type="String[]" (default: none) <br>
+     * (path specs relative to the context, comma separated if given as a string)
+     *
+     * @since 1.6
+     */
+    static final String COMPRESSION_EXCLUDEDPATHS = "compression.excludedPaths"; // $NON-NLS-1$
+
+    /**
+     * name="compression.cache.size" type="Long" (default: 0 -- no cache) <br>
+     * (bytes of compressed bodies kept for responses with a strong ETag)
+     *
+     * @since 1.6
+     */
+    static final String COMPRESSION_CACHE_SIZE = "compression.cache.size"; // $NON-NLS-1$
+
+    /**
+     * name="compression.cache.maxEntrySize" type="Integer" (default: 262144) <br>
+     * (largest uncompressed body that is cached)
+     *
+     * @since 1.6
+     */
+    static final String COMPRESSION_CACHE_MAXENTRYSIZE =
+            "compression.cache.maxEntrySize"; // $NON-NLS-1$
+
+    /**
+     * name="responsecache.ttl" type="String[]" (default: none -- no cache) <br>
+     * (path=seconds pairs, comma separated if given as a string. GET responses of the paths, in
+     * the context and exact or ending with /*, are kept for the seconds of their s-maxage or
+     * max-age, or else for those of the longest path that matches, and answered without running
+     * the servlet. Responses that are not a 200, set a cookie or are no-store, no-cache or private
+     * are not kept, for example /catalog/*=60)
+     *
+     * @since 1.6
+     */
+    static final String RESPONSECACHE_TTL = "responsecache.ttl"; // $NON-NLS-1$
+
+    /**
+     * name="responsecache.size" type="Long" (default: 16777216) <br>
+     * (bytes of the responses kept, counting their bodies, header fields and URLs, past which the
+     * least recently used responses are evicted)
+     *
+     * @since 1.6
+     */
+    static final String RESPONSECACHE_SIZE = "responsecache.size"; // $NON-NLS-1$
+
+    /**
+     * name="responsecache.maxEntrySize" type="Integer" (default: 262144) <br>
+     * (largest body that is kept)
+     *
+     * @since 1.6
+     */
+    static final String RESPONSECACHE_MAXENTRYSIZE = "responsecache.maxEntrySize"; // $NON-NLS-1$
+
+    /**
+     * name="responsecache.maxEntries" type="Integer" (default: 10000) <br>
+     * (responses kept, past which the least recently used are evicted)
+     *
+     * @since 1.6
+     */
+    static final String RESPONSECACHE_MAXENTRIES = "responsecache.maxEntries"; // $NON-NLS-1$
+
+    /**
+     * name="responsecache.coalesceTimeout" type="Integer" (default: 5000) <br>
+     * (milliseconds a request for a response that is not kept waits for a concurrent one for the
+     * same path and query, whose response it is then answered with, before it runs the servlet
+     * itself)
+     *
+     * @since 1.6
+     */
+    static final String RESPONSECACHE_COALESCETIMEOUT =
+            "responsecache.coalesceTimeout"; // $NON-NLS-1$
+
+    /**
+     * name="static.resources" type="String[]" (default: none) <br>
+     * (alias=location pairs, comma separated if given as a string. The location is a directory or
+     * bundle:symbolicName/path for a folder of an installed bundle. Aliases are served by the
+     * container ahead of the Http Service, for example /assets=/var/www/assets)
+     *
+     * @since 1.6
+     */
+    static final String STATIC_RESOURCES = "static.resources"; // $NON-NLS-1$
+
+    /**
+     * name="static.mappedBuffers" type="Boolean" (default: true) <br>
+     * (cache files as memory-mapped buffers instead of copying them to the heap)
+     *
+     * @since 1.6
+     */
+    static final String STATIC_MAPPEDBUFFERS = "static.mappedBuffers"; // $NON-NLS-1$
+
+    /**
+     * name="static.precompressed" type="Boolean" (default: true) <br>
+     * (serve .br and .gz siblings to clients that accept them)
+     *
+     * @since 1.6
+     */
+    static final String STATIC_PRECOMPRESSED = "static.precompressed"; // $NON-NLS-1$
+
+    /**
+     * name="static.cache.size" type="Integer" (default: 268435456 -- bytes for each alias)
+     *
+     * @since 1.6
+     */
+    static final String STATIC_CACHE_SIZE = "static.cache.size"; // $NON-NLS-1$
+
+    /**
+     * name="static.cache.maxFileSize" type="Integer" (default: 134217728)
+     *
+     * @since 1.6
+     */
+    static final String STATIC_CACHE_MAXFILESIZE = "static.cache.maxFileSize"; // $NON-NLS-1$
+
+    /**
+     * name="static.cache.maxFiles" type="Integer" (default: 2048)
+     *
+     * @since 1.6
+     */
+    static final String STATIC_CACHE_MAXFILES = "static.cache.maxFiles"; // $NON-NLS-1$
+
+    /**
+     * name="static.cacheControl" type="String" (default: none) <br>
+     * (Cache-Control header of static responses, for example max-age=3600)
+     *
+     * @since 1.6
+     */
+    static final String STATIC_CACHECONTROL = "static.cacheControl"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.enabled" type="Boolean" (default: false) <br>
+     * (register an HttpServerMetrics service with thread pool, connector and request counters)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_ENABLED = "metrics.enabled"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.path" type="String" (default: none -- no endpoint) <br>
+     * (serve the metrics in Prometheus text format on this path, for example /metrics)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_PATH = "metrics.path"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.port" type="Integer" (default: -1 -- the http and https connectors) <br>
+     * (serve the metrics endpoint, and nothing else, on a connector of its own)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_PORT = "metrics.port"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.host" type="String" (default: null -- all interfaces)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_HOST = "metrics.host"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.routes" type="Boolean" (default: false) <br>
+     * (record latency histograms of the Http Service requests by route; needs metrics.enabled)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_ROUTES = "metrics.routes"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.routes.depth" type="Integer" (default: 1) <br>
+     * (leading path segments that make up a route)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_ROUTES_DEPTH = "metrics.routes.depth"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.routes.max" type="Integer" (default: 100) <br>
+     * (routes with a histogram of their own; new ones count as "other" until some are idle for a
+     * window, and so dropped)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_ROUTES_MAX = "metrics.routes.max"; // $NON-NLS-1$
+
+    /**
+     * name="metrics.routes.window" type="Long" (default: 60000) <br>
+     * (milliseconds; the histograms cover the current and the previous window)
+     *
+     * @since 1.6
+     */
+    static final String METRICS_ROUTES_WINDOW = "metrics.routes.window"; // $NON-NLS-1$
+
+    /**
+     * name="bufferpool.type" type="String" (default: array) <br>
+     * (array -- buckets of fixed capacities, mapped -- a bucket for each capacity in use)
+     *
+     * @since 1.6
+     */
+    static final String BUFFERPOOL_TYPE = "bufferpool.type"; // $NON-NLS-1$
+
+    /**
+     * name="bufferpool.maxCapacity" type="Integer" (default: -1 -- 65536) <br>
+     * (largest buffer kept by the array pool)
+     *
+     * @since 1.6
+     */
+    static final String BUFFERPOOL_MAXCAPACITY = "bufferpool.maxCapacity"; // $NON-NLS-1$
+
+    /**
+     * name="bufferpool.maxQueueLength" type="Integer" (default: -1 -- unbounded) <br>
+     * (buffers kept for each capacity)
+     *
+     * @since 1.6
+     */
+    static final String BUFFERPOOL_MAXQUEUELENGTH = "bufferpool.maxQueueLength"; // $NON-NLS-1$
+
+    /**
+     * name="bufferpool.maxHeapMemory" type="Long" (default: -1 -- unbounded) <br>
+     * (bytes of heap buffers kept by the pool)
+     *
+     * @since 1.6
+     */
+    static final String BUFFERPOOL_MAXHEAPMEMORY = "bufferpool.maxHeapMemory"; // $NON-NLS-1$
+
+    /**
+     * name="bufferpool.maxDirectMemory" type="Long" (default: -1 -- unbounded) <br>
+     * (bytes of direct buffers kept by the pool)
+     *
+     * @since 1.6
+     */
+    static final String BUFFERPOOL_MAXDIRECTMEMORY = "bufferpool.maxDirectMemory"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.enabled" type="Boolean" (default: false) <br>
+     * (whether requests are written to an access log)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_ENABLED = "accesslog.enabled"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.path" type="String" (default: logs/&lt;pid&gt;.access.log in the data area
+     * of this bundle) <br>
+     * (the file the access log appends to)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_PATH = "accesslog.path"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.format" type="String" (default: ncsa) <br>
+     * (ncsa -- one line per request as in Apache's log, json -- one JSON object per line)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_FORMAT = "accesslog.format"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.fields" type="String[]" (default:
+     * remote,user,time,request,status,bytes,referer,agent) <br>
+     * (in order, from remote, user, time, request, method, uri, protocol, host, status, bytes,
+     * duration -- milliseconds, referer, and agent)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_FIELDS = "accesslog.fields"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.bufferSize" type="Integer" (default: 8192) <br>
+     * (records waiting for the writer thread; requests are not logged while it is full)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_BUFFERSIZE = "accesslog.bufferSize"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.rotate.size" type="Long" (default: -1 -- no limit) <br>
+     * (bytes after which the file is rotated)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_ROTATE_SIZE = "accesslog.rotate.size"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.rotate.period" type="String" (default: daily) <br>
+     * (none, hourly, or daily; the file is rotated at the start of each period)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_ROTATE_PERIOD = "accesslog.rotate.period"; // $NON-NLS-1$
+
+    /**
+     * name="accesslog.rotate.gzip" type="Boolean" (default: false) <br>
+     * (whether rotated files are compressed in the background)
+     *
+     * @since 1.6
+     */
+    static final String ACCESSLOG_ROTATE_GZIP = "accesslog.rotate.gzip"; // $NON-NLS-1$
+
+    /**
+     * name="multipart.enabled" type="Boolean" (default: false) <br>
+     * (whether the servlets of the Http Service can read multipart/form-data requests with
+     * getParts(), as configured by the other multipart settings)
+     *
+     * @since 1.6
+     */
+    static final String MULTIPART_ENABLED = "multipart.enabled"; // $NON-NLS-1$
+
+    /**
+     * name="multipart.fileSizeThreshold" type="Integer" (default: 65536) <br>
+     * (bytes of a part kept in memory, past which the part is streamed to a file in the spool
+     * directory)
+     *
      * @since 1.3
      */
-    @Deprecated
     static final String MULTIPART_FILESIZETHRESHOLD = "multipart.fileSizeThreshold"; // $NON-NLS-1$
 
     /**
-     * @deprecated
+     * name="multipart.location" type="String" (default: the work directory of the context) <br>
+     * (the spool directory of the parts past the threshold, created if missing. A tmpfs keeps
+     * them in memory, but off the heap. The files are deleted in the background once the request
+     * completes)
+     *
      * @since 1.3
      */
-    @Deprecated static final String MULTIPART_LOCATION = "multipart.location"; // $NON-NLS-1$
+    static final String MULTIPART_LOCATION = "multipart.location"; // $NON-NLS-1$
 
     /**
-     * @deprecated
+     * name="multipart.maxFileSize" type="Long" (default: -1 -- unlimited) <br>
+     * (bytes a single part may have. Reading the parts fails as soon as one exceeds it)
+     *
      * @since 1.3
      */
-    @Deprecated static final String MULTIPART_MAXFILESIZE = "multipart.maxFileSize"; // $NON-NLS-1$
+    static final String MULTIPART_MAXFILESIZE = "multipart.maxFileSize"; // $NON-NLS-1$
 
     /**
-     * @deprecated
+     * name="multipart.maxRequestSize" type="Long" (default: -1 -- unlimited) <br>
+     * (bytes a multipart request may have. A request that declares a longer body is answered 413
+     * before its body is read, and reading the parts of one without a length fails as soon as it
+     * exceeds it)
+     *
      * @since 1.3
      */
-    @Deprecated
     static final String MULTIPART_MAXREQUESTSIZE = "multipart.maxRequestSize"; // $NON-NLS-1$
 
     /** name="ssl.keystore" type="String" */
@@ -106,12 +748,132 @@ final class JettyConstants {
     /** name="ssl.protocol" type="String" */
     static final String SSL_PROTOCOL = "ssl.protocol"; // $NON-NLS-1$
 
+    /**
+     * name="ssl.provider" type="String[]" (default: none -- the JDK's) <br>
+     * (security providers tried in order for the https connector, such as Conscrypt or SunJSSE. The
+     * first that is available and implements ssl.protocol is used, else the JDK's. Conscrypt is
+     * installed from the class path when named. HTTP/2 over a provider other than the JDK's needs
+     * the Jetty ALPN module of that provider)
+     *
+     * @since 1.6
+     */
+    static final String SSL_PROVIDER = "ssl.provider"; // $NON-NLS-1$
+
     /** name="ssl.algorithm" type="String" */
     static final String SSL_ALGORITHM = "ssl.algorithm"; // $NON-NLS-1$
 
     /** name="ssl.keystoretype" type="String" */
     static final String SSL_KEYSTORE_TYPE = "ssl.keystore.type"; // $NON-NLS-1$
 
+    /**
+     * name="ssl.keystore.scanInterval" type="Integer" (default: 60 -- seconds, 0 to not watch)
+     * <br>
+     * (how often the keystore file is checked for changes. A changed keystore is reloaded by the
+     * running connector, so a renewed certificate is used for new handshakes without a restart)
+     *
+     * @since 1.6
+     */
+    static final String SSL_KEYSTORE_SCANINTERVAL = "ssl.keystore.scanInterval"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.truststore.path" type="String" (default: none -- the JVM's trust store) <br>
+     * (certificates that client certificates are verified against)
+     *
+     * @since 1.6
+     */
+    static final String SSL_TRUSTSTORE_PATH = "ssl.truststore.path"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.truststore.password" type="String"
+     *
+     * @since 1.6
+     */
+    static final String SSL_TRUSTSTORE_PASSWORD = "ssl.truststore.password"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.truststore.type" type="String" (default: the keystore type)
+     *
+     * @since 1.6
+     */
+    static final String SSL_TRUSTSTORE_TYPE = "ssl.truststore.type"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.includeProtocols" type="String[]" (default: all the JVM enables) <br>
+     * (protocols such as TLSv1.3 or TLSv1.2 the connector may negotiate)
+     *
+     * @since 1.6
+     */
+    static final String SSL_INCLUDEPROTOCOLS = "ssl.includeProtocols"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.excludeProtocols" type="String[]" <br>
+     * (protocols never negotiated, in addition to the SSL ones Jetty always excludes)
+     *
+     * @since 1.6
+     */
+    static final String SSL_EXCLUDEPROTOCOLS = "ssl.excludeProtocols"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.includeCipherSuites" type="String[]" (default: all the JVM enables) <br>
+     * (cipher suites, or regular expressions matching them, the connector may negotiate)
+     *
+     * @since 1.6
+     */
+    static final String SSL_INCLUDECIPHERSUITES = "ssl.includeCipherSuites"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.excludeCipherSuites" type="String[]" <br>
+     * (cipher suites, or regular expressions matching them, never negotiated, in addition to the
+     * weak ones Jetty always excludes)
+     *
+     * @since 1.6
+     */
+    static final String SSL_EXCLUDECIPHERSUITES = "ssl.excludeCipherSuites"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.sessionCacheSize" type="Integer" (default: -1 -- the JVM's default) <br>
+     * (TLS sessions kept for resumption; a client resuming one skips the full handshake)
+     *
+     * @since 1.6
+     */
+    static final String SSL_SESSIONCACHESIZE = "ssl.sessionCacheSize"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.sessionTimeout" type="Integer" (default: -1 -- the JVM's default) <br>
+     * (seconds a TLS session may be resumed)
+     *
+     * @since 1.6
+     */
+    static final String SSL_SESSIONTIMEOUT = "ssl.sessionTimeout"; // $NON-NLS-1$
+
+    /**
+     * name="org.eclipse.equinox.http.jetty.ssl.sessionTickets" type="Boolean" (default: the JVM's
+     * default) <br>
+     * (framework property; whether TLS sessions are resumed from tickets the clients keep rather
+     * than from the server's cache. It sets jdk.tls.server.enableSessionTicketExtension unless that
+     * is set already, for the whole JVM, and only takes effect on Java 13 and later before the
+     * first TLS handshake)
+     *
+     * @since 1.6
+     */
+    static final String SSL_SESSIONTICKETS = "ssl.sessionTickets"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.renegotiationAllowed" type="Boolean" (default: true) <br>
+     * (whether clients may renegotiate TLS 1.2 connections)
+     *
+     * @since 1.6
+     */
+    static final String SSL_RENEGOTIATIONALLOWED = "ssl.renegotiationAllowed"; // $NON-NLS-1$
+
+    /**
+     * name="ssl.renegotiationLimit" type="Integer" (default: 5 -- -1 for no limit) <br>
+     * (renegotiations allowed per connection)
+     *
+     * @since 1.6
+     */
+    static final String SSL_RENEGOTIATIONLIMIT = "ssl.renegotiationLimit"; // $NON-NLS-1$
+
     /** name="context.path" type="String" */
     static final String CONTEXT_PATH = "context.path"; // $NON-NLS-1$
 
@@ -126,6 +888,251 @@ final class JettyConstants {
      */
     static final String HOUSEKEEPER_INTERVAL = "housekeeper.interval"; // $NON-NLS-1$
 
+    /**
+     * name="session.store" type="String" (default: memory) <br>
+     * (memory -- sessions are lost when the server is restarted, file -- one file per session,
+     * loaded on first access, so that sessions survive restarts and configuration changes, jdbc --
+     * a database table that several nodes can share)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_STORE = "session.store"; // $NON-NLS-1$
+
+    /**
+     * name="session.store.path" type="String" (default: sessions/&lt;pid&gt; in the data area of
+     * this bundle) <br>
+     * (the directory of the file store)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_STORE_PATH = "session.store.path"; // $NON-NLS-1$
+
+    /**
+     * name="session.store.writeBehind" type="Long" (default: 1000, 0 for the jdbc store) <br>
+     * (milliseconds between the background writes of changed sessions to the store, 0 writes them
+     * before the request completes. Changes not written yet are lost if the process dies)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_STORE_WRITEBEHIND = "session.store.writeBehind"; // $NON-NLS-1$
+
+    /**
+     * name="session.store.savePeriod" type="Integer" (default: 0) <br>
+     * (seconds between the writes of a session whose attributes did not change, only its access
+     * time, 0 writes it after every request)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_STORE_SAVEPERIOD = "session.store.savePeriod"; // $NON-NLS-1$
+
+    /**
+     * name="session.workerName" type="String" (default: node0) <br>
+     * (identifies this node in session ids and in the jdbc store, where each node scavenges the
+     * expired sessions it last used every housekeeper.interval; give each node its own)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_WORKERNAME = "session.workerName"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.driver" type="String" <br>
+     * (driver class of the jdbc store, used to find its DataSourceFactory service; without one the
+     * driver comes from DriverManager)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_DRIVER = "session.jdbc.driver"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.url" type="String" <br>
+     * (database of the jdbc store, required for it)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_URL = "session.jdbc.url"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.user" type="String"
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_USER = "session.jdbc.user"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.password" type="String"
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_PASSWORD = "session.jdbc.password"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.pool.maxSize" type="Integer" (default: 8) <br>
+     * (connections the jdbc store keeps open at most)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_POOL_MAXSIZE = "session.jdbc.pool.maxSize"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.pool.timeout" type="Long" (default: 5000) <br>
+     * (milliseconds a request waits for a connection when all are in use)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_POOL_TIMEOUT = "session.jdbc.pool.timeout"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.table" type="String" (default: JettySessions) <br>
+     * (created if it does not exist)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_TABLE = "session.jdbc.table"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.schema" type="String" (default: none)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_SCHEMA = "session.jdbc.schema"; // $NON-NLS-1$
+
+    /**
+     * name="session.jdbc.columns" type="String[]" (default: Jetty's column names) <br>
+     * (property=column pairs for the properties id, contextPath, virtualHost, lastNode,
+     * accessTime, lastAccessTime, createTime, cookieTime, lastSavedTime, expiryTime, maxInterval
+     * and map)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_JDBC_COLUMNS = "session.jdbc.columns"; // $NON-NLS-1$
+
+    /**
+     * name="session.cache.evictionIdle" type="Integer" (default: -1 -- never, 0 for the jdbc
+     * store so that a request sees the changes made on other nodes) <br>
+     * (seconds a session may be idle before it is dropped from memory, 0 as soon as no request
+     * uses it. It is loaded from the store again on its next request)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_CACHE_EVICTIONIDLE = "session.cache.evictionIdle"; // $NON-NLS-1$
+
+    /**
+     * name="session.cache.saveOnEviction" type="Boolean" (default: false) <br>
+     * (whether a session is written to the store when it is dropped from memory)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_CACHE_SAVEONEVICTION =
+            "session.cache.saveOnEviction"; // $NON-NLS-1$
+
+    /**
+     * name="session.cache.maxSessions" type="Integer" (default: -1 -- unbounded) <br>
+     * (sessions kept in memory; beyond that the least recently used idle ones are dropped)
+     *
+     * @since 1.6
+     */
+    static final String SESSION_CACHE_MAXSESSIONS = "session.cache.maxSessions"; // $NON-NLS-1$
+
+    /**
+     * name="warmup.requests" type="String[]" (default: none -- no warm-up) <br>
+     * (requests, as "METHOD /path" or "/path" for a GET, that are sent through an in-process
+     * connector after the server has started and before its network connectors are opened, so
+     * that the JIT compiles the request path before the first client arrives. The paths include
+     * the context path. A connector on an ephemeral port is bound, but not accepting, during the
+     * warm-up)
+     *
+     * @since 1.6
+     */
+    static final String WARMUP_REQUESTS = "warmup.requests"; // $NON-NLS-1$
+
+    /**
+     * name="warmup.iterations" type="Integer" (default: 1000 -- times the requests are sent)
+     *
+     * @since 1.6
+     */
+    static final String WARMUP_ITERATIONS = "warmup.iterations"; // $NON-NLS-1$
+
+    /**
+     * name="warmup.timeout" type="Integer" (default: 30000) <br>
+     * (milliseconds after which the warm-up ends even if not all requests were sent)
+     *
+     * @since 1.6
+     */
+    static final String WARMUP_TIMEOUT = "warmup.timeout"; // $NON-NLS-1$
+
+    /**
+     * name="shutdown.graceful" type="Boolean" (default: false -- stop immediately) <br>
+     * (stop accepting connections and let in-flight requests complete before the server or a
+     * replaced connector is stopped)
+     *
+     * @since 1.6
+     */
+    static final String SHUTDOWN_GRACEFUL = "shutdown.graceful"; // $NON-NLS-1$
+
+    /**
+     * name="shutdown.timeout" type="Long" (default: 30000 -- drain timeout in milliseconds)
+     *
+     * @since 1.6
+     */
+    static final String SHUTDOWN_TIMEOUT = "shutdown.timeout"; // $NON-NLS-1$
+
+    /**
+     * name="org.eclipse.equinox.http.jetty.shared.resources" type="Boolean" (default: false) <br>
+     * (framework property; all servers use one thread pool, scheduler and buffer pool, which are
+     * also registered as services. The pool is sized by the framework properties
+     * org.eclipse.equinox.http.jetty.http.maxThreads and org.eclipse.equinox.http.jetty.http.minThreads;
+     * the pool settings of each server are ignored, with a warning)
+     *
+     * @since 1.6
+     */
+    static final String SHARED_RESOURCES = "shared.resources"; // $NON-NLS-1$
+
+    /**
+     * name="org.eclipse.equinox.http.jetty.log.async" type="Boolean" (default: false) <br>
+     * (framework property; log events are queued in a bounded buffer and written by a background
+     * thread in batches instead of on the thread that logs them)
+     *
+     * @since 1.6
+     */
+    static final String LOG_ASYNC = "log.async"; // $NON-NLS-1$
+
+    /**
+     * name="org.eclipse.equinox.http.jetty.log.async.bufferSize" type="Integer" (default: 8192)
+     * <br>
+     * (framework property; events the buffer holds, rounded up to a power of two)
+     *
+     * @since 1.6
+     */
+    static final String LOG_ASYNC_BUFFERSIZE = "log.async.bufferSize"; // $NON-NLS-1$
+
+    /**
+     * name="org.eclipse.equinox.http.jetty.log.async.dropPolicy" type="String" (default: discard)
+     * <br>
+     * (framework property; discard to drop and count an event that finds the buffer full, block to
+     * make the logging thread wait for room. The writer reports drops as a warning)
+     *
+     * @since 1.6
+     */
+    static final String LOG_ASYNC_DROPPOLICY = "log.async.dropPolicy"; // $NON-NLS-1$
+
+    /**
+     * name="org.eclipse.equinox.http.jetty.log.async.target" type="String" (default: stderr) <br>
+     * (framework property; stderr, file, or logservice for the OSGi LogService. Events go to stderr
+     * while no LogService is registered)
+     *
+     * @since 1.6
+     */
+    static final String LOG_ASYNC_TARGET = "log.async.target"; // $NON-NLS-1$
+
+    /**
+     * name="org.eclipse.equinox.http.jetty.log.async.file" type="String" (default: jetty.log in the
+     * data area of this bundle) <br>
+     * (framework property; the file the file target appends to)
+     *
+     * @since 1.6
+     */
+    static final String LOG_ASYNC_FILE = "log.async.file"; // $NON-NLS-1$
+
     /**
      * name="customizer.class" type="String" <br>
      * (full qualified name of the class that implements <code>
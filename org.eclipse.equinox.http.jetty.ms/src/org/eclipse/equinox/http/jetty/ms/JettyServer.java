@@ -0,0 +1,1727 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpSessionIdListener;
+
+import org.eclipse.equinox.http.jetty.ms.metrics.HttpServerMetrics;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.AcceptRateLimit;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.ConnectionLimit;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.ForwardedRequestCustomizer;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnection;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.LowResourceMonitor;
+import org.eclipse.jetty.server.ProxyConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.server.session.DefaultSessionIdManager;
+import org.eclipse.jetty.server.session.HouseKeeper;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.ssl.KeyStoreScanner;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
+
+/**
+ * One Jetty server with its own connectors and Http Service, configured through Config Admin.
+ * Configuration changes are applied to the running server where possible.
+ */
+class JettyServer implements ManagedService {
+
+    private static final Logger LOG = Log.getLogger(JettyServer.class);
+
+    private static final int DEFAULT_IDLE_TIMEOUT = 30000;
+
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000;
+
+    private static final long DRAIN_POLL_INTERVAL = 50;
+
+    private static final int BIND_ATTEMPTS = 20;
+
+    private static final long BIND_RETRY_INTERVAL = 50;
+
+    private static final String DIR_PREFIX = "pid_"; // $NON-NLS-1$
+
+    // Appended to the name of a work directory that is being deleted.
+    private static final String TRASH_SUFFIX = ".deleted-"; // $NON-NLS-1$
+
+    // The work directories being deleted in the background.
+    private static final Set<File> DELETING = ConcurrentHashMap.newKeySet();
+
+    private static final String CONTEXT_TEMPDIR = "javax.servlet.context.tempdir"; // $NON-NLS-1$
+
+    private static final String JETTY_WORK_DIR = "jettywork"; // $NON-NLS-1$
+
+    // OSGi Http Service suggest these properties for setting the default ports
+    private static final String ORG_OSGI_SERVICE_HTTP_PORT =
+            "org.osgi.service.http.port"; //$NON-NLS-1$
+
+    private static final String ORG_OSGI_SERVICE_HTTP_PORT_SECURE =
+            "org.osgi.service.http.port.secure"; //$NON-NLS-1$
+
+    // Configuration keys that updated() can apply to a running server. A change of any other key
+    // restarts the server.
+    private static final Set<String> THREAD_POOL_KEYS =
+            keys(
+                    JettyConstants.HTTP_MAXTHREADS,
+                    JettyConstants.HTTP_MINTHREADS,
+                    JettyConstants.HTTP_THREADIDLETIMEOUT);
+
+    // Settings of both connectors that Jetty fixes when it builds or starts one, so a change
+    // replaces the connector.
+    private static final String[] CONNECTOR_KEYS = {
+        JettyConstants.HTTP_ACCEPTORS,
+        JettyConstants.HTTP_SELECTORS,
+        JettyConstants.HTTP_ACCEPTQUEUESIZE,
+        JettyConstants.HTTP_REUSEADDRESS,
+        // The limits are accept listeners, which a connector registers when it starts.
+        JettyConstants.HTTP_MAXCONNECTIONS,
+        JettyConstants.HTTP_ACCEPTRATE
+    };
+
+    private static final Set<String> HTTP_CONNECTOR_KEYS =
+            keys(
+                    CONNECTOR_KEYS,
+                    JettyConstants.HTTP_ENABLED,
+                    JettyConstants.HTTP_PORT,
+                    JettyConstants.HTTP_HOST,
+                    JettyConstants.HTTP_H2C,
+                    ORG_OSGI_SERVICE_HTTP_PORT);
+
+    // Settings the Unix domain socket connector shares with the plain one.
+    private static final Set<String> UNIXSOCKET_CONNECTOR_KEYS =
+            keys(JettyConstants.HTTP_MAXCONNECTIONS, JettyConstants.HTTP_ACCEPTRATE);
+
+    // Applied to the running connectors, the connections they accept from then on use them.
+    private static final Set<String> CONNECTION_KEYS =
+            keys(
+                    JettyConstants.HTTP_IDLETIMEOUT,
+                    JettyConstants.HTTP_OUTPUTBUFFERSIZE,
+                    JettyConstants.HTTP_REQUESTHEADERSIZE,
+                    JettyConstants.HTTP2_MAXCONCURRENTSTREAMS,
+                    JettyConstants.HTTP2_INITIALSESSIONRECVWINDOW,
+                    JettyConstants.HTTP2_INITIALSTREAMRECVWINDOW,
+                    JettyConstants.HTTP2_HEADERTABLESIZE,
+                    // The connectors advertise the secure port for redirects.
+                    JettyConstants.HTTPS_ENABLED,
+                    JettyConstants.HTTPS_PORT,
+                    ORG_OSGI_SERVICE_HTTP_PORT_SECURE);
+
+    private static final Set<String> HTTPS_CONNECTOR_KEYS =
+            keys(
+                    CONNECTOR_KEYS,
+                    JettyConstants.HTTPS_ENABLED,
+                    JettyConstants.HTTPS_HTTP2,
+                    JettyConstants.HTTPS_PORT,
+                    JettyConstants.HTTPS_HOST,
+                    ORG_OSGI_SERVICE_HTTP_PORT_SECURE,
+                    JettyConstants.SSL_KEYSTORE_PATH,
+                    JettyConstants.SSL_KEYSTORE_SCANINTERVAL,
+                    JettyConstants.SSL_PROTOCOL,
+                    JettyConstants.SSL_PROVIDER,
+                    JettyConstants.SSL_ALGORITHM,
+                    JettyConstants.SSL_NEEDCLIENTAUTH,
+                    JettyConstants.SSL_WANTCLIENTAUTH,
+                    JettyConstants.SSL_INCLUDEPROTOCOLS,
+                    JettyConstants.SSL_EXCLUDEPROTOCOLS,
+                    JettyConstants.SSL_INCLUDECIPHERSUITES,
+                    JettyConstants.SSL_EXCLUDECIPHERSUITES,
+                    JettyConstants.SSL_SESSIONCACHESIZE,
+                    JettyConstants.SSL_SESSIONTIMEOUT,
+                    JettyConstants.SSL_RENEGOTIATIONALLOWED,
+                    JettyConstants.SSL_RENEGOTIATIONLIMIT);
+
+    // Reloaded into the running https connector, its connections stay open.
+    private static final Set<String> KEYSTORE_KEYS =
+            keys(
+                    JettyConstants.SSL_KEYSTORE_PASSWORD,
+                    JettyConstants.SSL_KEY_PASSWORD,
+                    JettyConstants.SSL_KEYSTORE_TYPE,
+                    JettyConstants.SSL_TRUSTSTORE_PATH,
+                    JettyConstants.SSL_TRUSTSTORE_PASSWORD,
+                    JettyConstants.SSL_TRUSTSTORE_TYPE);
+
+    private static final Set<String> SESSION_KEYS =
+            keys(
+                    JettyConstants.CONTEXT_SESSIONINACTIVEINTERVAL,
+                    JettyConstants.HOUSEKEEPER_INTERVAL);
+
+    private static final Set<String> SERVLET_KEYS = keys(JettyConstants.OTHER_INFO);
+
+    // Read when the server or a connector is stopped.
+    private static final Set<String> SHUTDOWN_KEYS =
+            keys(JettyConstants.SHUTDOWN_GRACEFUL, JettyConstants.SHUTDOWN_TIMEOUT);
+
+    // Settings of the thread and buffer pools, which the shared resources replace.
+    private static final Set<String> SHARED_KEYS =
+            keys(
+                    JettyConstants.HTTP_MAXTHREADS,
+                    JettyConstants.HTTP_MINTHREADS,
+                    JettyConstants.HTTP_THREADIDLETIMEOUT,
+                    JettyConstants.HTTP_RESERVEDTHREADS,
+                    JettyConstants.HTTP_QUEUESIZE,
+                    JettyConstants.HTTP_MAXQUEUEWAIT,
+                    JettyConstants.HTTP_ADAPTIVE,
+                    JettyConstants.HTTP_ADAPTIVE_PERIOD,
+                    JettyConstants.HTTP_ADAPTIVE_TARGETQUEUEWAIT,
+                    JettyConstants.HTTP_ADAPTIVE_SHRINKAFTER,
+                    JettyConstants.BUFFERPOOL_TYPE,
+                    JettyConstants.BUFFERPOOL_MAXCAPACITY,
+                    JettyConstants.BUFFERPOOL_MAXQUEUELENGTH,
+                    JettyConstants.BUFFERPOOL_MAXHEAPMEMORY,
+                    JettyConstants.BUFFERPOOL_MAXDIRECTMEMORY);
+
+    // Init parameters the Http Service publishes as service properties.
+    private static final Set<String> ENDPOINT_INIT_PARAMETERS =
+            keys(
+                    JettyConstants.HTTP_PORT,
+                    JettyConstants.HTTP_HOST,
+                    JettyConstants.HTTPS_PORT,
+                    JettyConstants.HTTPS_HOST,
+                    JettyConstants.OTHER_INFO);
+
+    private final BundleContext ctx;
+
+    private final String pid;
+
+    /** Resources shared with the other servers, or null if this server owns its own. */
+    private final SharedResources sharedResources;
+
+    private File jettyWorkDir;
+
+    private Server httpServer;
+
+    /** The configuration {@link #httpServer} currently runs with. */
+    private Dictionary<String, ?> activeProperties;
+
+    private ServerConnector httpConnector;
+
+    private ServerConnector httpsConnector;
+
+    /** Null if no Unix domain socket is configured, or the JVM does not support them. */
+    private AbstractConnector unixSocketConnector;
+
+    private ServletContextHandler httpContext;
+
+    private StatisticsHandler statisticsHandler;
+
+    private ServletHolder holder;
+
+    /** Counters of the running server, or null if metrics are disabled. */
+    private ServerMetrics metrics;
+
+    private ServiceRegistration<HttpServerMetrics> metricsRegistration;
+
+    JettyServer(BundleContext ctx, String pid, SharedResources sharedResources) {
+        this.ctx = ctx;
+        this.pid = pid;
+        this.sharedResources = sharedResources;
+    }
+
+    /** Stops the server, if running, and forgets its configuration. */
+    synchronized void stop() throws Exception {
+        stopHttpServer();
+    }
+
+    private void stopHttpServer() throws Exception {
+        if (metricsRegistration != null) {
+            metricsRegistration.unregister();
+            metricsRegistration = null;
+        }
+        if (httpServer != null) {
+            if (Details.getBoolean(activeProperties, JettyConstants.SHUTDOWN_GRACEFUL, false)) {
+                drain();
+            }
+            try {
+                httpServer.stop();
+            } finally {
+                // Forgotten even if it failed to stop, so the next update starts a new one.
+                httpServer = null;
+                activeProperties = null;
+                httpConnector = null;
+                httpsConnector = null;
+                unixSocketConnector = null;
+                httpContext = null;
+                statisticsHandler = null;
+                holder = null;
+                metrics = null;
+                deleteInBackground(jettyWorkDir);
+                jettyWorkDir = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void updated(Dictionary<String, ?> properties)
+            throws ConfigurationException {
+        if (properties != null && httpServer != null) {
+            final String reason = reconfigure(properties);
+            if (reason == null) {
+                return;
+            }
+            LOG.info("Restarting http server: {}", reason); // $NON-NLS-1$
+        }
+
+        final StartupTimer timer = new StartupTimer();
+        final long stopping = System.nanoTime();
+        try {
+            stopHttpServer();
+        } catch (Exception e) {
+            throw new ConfigurationException(pid, e.getMessage(), e);
+        }
+
+        if (properties == null) {
+            return;
+        }
+        timer.record("stop", stopping); // $NON-NLS-1$
+
+        startHttpServer(properties, timer);
+    }
+
+    private void startHttpServer(Dictionary<String, ?> properties, StartupTimer timer)
+            throws ConfigurationException {
+        final Server server;
+        if (sharedResources != null) {
+            warnShared(properties);
+            server = sharedResources.createServer();
+        } else {
+            final boolean adaptive =
+                    Details.getBoolean(properties, JettyConstants.HTTP_ADAPTIVE, false);
+            final BoundedThreadPool threadPool =
+                    new BoundedThreadPool(
+                            Details.getInt(properties, JettyConstants.HTTP_MAXTHREADS, 200),
+                            Details.getInt(properties, JettyConstants.HTTP_MINTHREADS, 8),
+                            Details.getInt(
+                                    properties, JettyConstants.HTTP_THREADIDLETIMEOUT, 60000),
+                            Details.getInt(properties, JettyConstants.HTTP_RESERVEDTHREADS, -1),
+                            Details.getInt(properties, JettyConstants.HTTP_QUEUESIZE, -1),
+                            adaptive
+                                    || Details.getLong(
+                                                    properties,
+                                                    JettyConstants.HTTP_MAXQUEUEWAIT,
+                                                    -1)
+                                            > 0);
+            server = new Server(threadPool);
+            if (adaptive) {
+                server.addBean(createThreadPoolTuner(properties, threadPool));
+            }
+            // The connectors look the pool up as a server bean.
+            server.addBean(
+                    createByteBufferPool(
+                            Details.getString(properties, JettyConstants.BUFFERPOOL_TYPE, null),
+                            Details.getInt(properties, JettyConstants.BUFFERPOOL_MAXCAPACITY, -1),
+                            Details.getInt(
+                                    properties, JettyConstants.BUFFERPOOL_MAXQUEUELENGTH, -1),
+                            Details.getLong(
+                                    properties, JettyConstants.BUFFERPOOL_MAXHEAPMEMORY, -1),
+                            Details.getLong(
+                                    properties, JettyConstants.BUFFERPOOL_MAXDIRECTMEMORY, -1)));
+        }
+
+        // The in-flight requests are waited for by drain(), if the shutdown is graceful, so the
+        // server stops right away rather than after Jetty's own default stop timeout.
+        server.setStopTimeout(0);
+
+        // Counts in-flight requests, including async ones, for a graceful shutdown.
+        final StatisticsHandler statisticsHandler = new StatisticsHandler();
+        final long maxQueueWait =
+                Details.getLong(properties, JettyConstants.HTTP_MAXQUEUEWAIT, -1);
+        // Only the pool of this server notes how long its tasks wait.
+        final LoadSheddingHandler loadSheddingHandler =
+                maxQueueWait > 0 && sharedResources == null
+                        ? new LoadSheddingHandler(
+                                maxQueueWait,
+                                Details.getInt(properties, JettyConstants.HTTP_RETRYAFTER, 1))
+                        : null;
+        // Set before the connectors are created, which registers them.
+        metrics =
+                Details.getBoolean(properties, JettyConstants.METRICS_ENABLED, false)
+                        ? new ServerMetrics(
+                                server.getThreadPool(),
+                                statisticsHandler,
+                                loadSheddingHandler,
+                                server.getBean(ThreadPoolTuner.class),
+                                createRouteLatencies(properties))
+                        : null;
+
+        final HttpConfiguration http_config = createHttpConfiguration(properties);
+
+        final String[] warmupRequests =
+                Details.getStrings(properties, JettyConstants.WARMUP_REQUESTS, null);
+        final boolean warmup = warmupRequests != null && warmupRequests.length > 0;
+        // Added after the warm-up, if there is one, and only bound then.
+        final List<Connector> connectors = new ArrayList<>();
+
+        // Loading the key store and setting up TLS take the longest, so the https connector is
+        // prepared while this thread prepares the rest.
+        final FutureTask<ServerConnector> httpsTask =
+                new FutureTask<>(
+                        () ->
+                                prepareHttpsConnector(
+                                        properties, server, http_config, warmup, timer));
+        if (Details.getBoolean(properties, JettyConstants.HTTPS_ENABLED, false)) {
+            final Thread thread = new Thread(httpsTask, "equinox-jetty-https"); // $NON-NLS-1$
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            httpsTask.run();
+        }
+
+        try {
+            long phase = System.nanoTime();
+            final ServerConnector httpConnector =
+                    createHttpConnector(properties, server, http_config);
+            if (httpConnector != null) {
+                // An ephemeral port is bound right away, as the servlet is told the port it got.
+                if (!warmup || httpConnector.getPort() == 0) {
+                    try {
+                        httpConnector.open();
+                    } catch (IOException e) {
+                        throw new ConfigurationException(pid, e.getMessage(), e);
+                    }
+                }
+                connectors.add(httpConnector);
+            }
+
+            final AbstractConnector unixSocketConnector =
+                    createUnixSocketConnector(properties, server, http_config);
+            if (unixSocketConnector != null) {
+                // Bound when the server starts.
+                connectors.add(unixSocketConnector);
+            }
+            timer.record("http", phase); // $NON-NLS-1$
+
+            phase = System.nanoTime();
+            final ServletHolder holder =
+                    new ServletHolder(new Activator.InternalHttpServiceServlet());
+            holder.setInitOrder(0);
+            holder.setInitParameter(Constants.SERVICE_VENDOR, "Eclipse.org"); // $NON-NLS-1$
+            holder.setInitParameter(
+                    Constants.SERVICE_DESCRIPTION,
+                    "Equinox Jetty-based Http Service"); // $NON-NLS-1$
+
+            final String multipartServletName =
+                    "Equinox Jetty-based Http Service - Multipart Servlet"; //$NON-NLS-1$
+
+            holder.setInitParameter("multipart.servlet.name", multipartServletName); // $NON-NLS-1$
+
+            final ServletContextHandler httpContext;
+            try {
+                httpContext = createHttpContext(properties);
+            } catch (IOException e) {
+                throw new ConfigurationException(pid, e.getMessage(), e);
+            }
+            holder.setInitParameter(JettyConstants.CONTEXT_PATH, httpContext.getContextPath());
+            httpContext.addServlet(holder, "/*"); // $NON-NLS-1$
+            if (metrics != null && metrics.getRouteLatencies() != null) {
+                httpContext.setAttribute(
+                        Activator.INTERNAL_ROUTE_LATENCIES, metrics.getRouteLatencies());
+            }
+            addStaticResources(properties, httpContext);
+
+            if (Details.getBoolean(properties, JettyConstants.MULTIPART_ENABLED, false)) {
+                final MultipartHandler multipartHandler;
+                try {
+                    multipartHandler =
+                            new MultipartHandler(
+                                    Details.getString(
+                                            properties, JettyConstants.MULTIPART_LOCATION, null),
+                                    Details.getLong(
+                                            properties, JettyConstants.MULTIPART_MAXFILESIZE, -1),
+                                    Details.getLong(
+                                            properties,
+                                            JettyConstants.MULTIPART_MAXREQUESTSIZE,
+                                            -1),
+                                    Details.getInt(
+                                            properties,
+                                            JettyConstants.MULTIPART_FILESIZETHRESHOLD,
+                                            64 * 1024));
+                } catch (IOException e) {
+                    throw new ConfigurationException(pid, e.getMessage(), e);
+                }
+                httpContext.insertHandler(multipartHandler);
+                // Deletes the spooled parts of a request once it completes.
+                httpContext.addEventListener(multipartHandler);
+            }
+
+            final String[] cacheTtls =
+                    Details.getStrings(properties, JettyConstants.RESPONSECACHE_TTL, null);
+            if (cacheTtls != null) {
+                final ResponseCacheHandler cacheHandler;
+                try {
+                    cacheHandler =
+                            new ResponseCacheHandler(
+                                    ResponseCacheHandler.parseTtls(cacheTtls),
+                                    Details.getLong(
+                                            properties,
+                                            JettyConstants.RESPONSECACHE_SIZE,
+                                            16 * 1024 * 1024),
+                                    Details.getInt(
+                                            properties,
+                                            JettyConstants.RESPONSECACHE_MAXENTRYSIZE,
+                                            256 * 1024),
+                                    Details.getInt(
+                                            properties,
+                                            JettyConstants.RESPONSECACHE_MAXENTRIES,
+                                            10000),
+                                    Details.getInt(
+                                            properties,
+                                            JettyConstants.RESPONSECACHE_COALESCETIMEOUT,
+                                            5000));
+                } catch (IllegalArgumentException e) {
+                    throw new ConfigurationException(pid, e.getMessage(), e);
+                }
+                // Ahead of the session handler, so a hit does not touch the session.
+                httpContext.insertHandler(cacheHandler);
+                if (metrics != null) {
+                    metrics.setResponseCache(cacheHandler);
+                }
+            }
+
+            if (Details.getBoolean(properties, JettyConstants.HTTP_VIRTUALTHREADS, false)) {
+                final VirtualThreadExecutor executor = VirtualThreadExecutor.newInstance();
+                if (executor != null) {
+                    // Stopped with the server, and listed with its counters in the server dump.
+                    server.addBean(executor);
+                    httpContext.setAttribute(Activator.INTERNAL_DISPATCH_EXECUTOR, executor);
+                    if (metrics != null) {
+                        metrics.setVirtualThreads(executor);
+                    }
+                    holder.setAsyncSupported(true);
+                } else {
+                    LOG.info(
+                            "Virtual threads are not supported by this JVM, requests run on the"
+                                    + " thread pool"); // $NON-NLS-1$
+                }
+            }
+
+            final Handler contextHandler =
+                    Details.getBoolean(properties, JettyConstants.COMPRESSION_ENABLED, false)
+                            ? createGzipHandler(properties, httpContext)
+                            : httpContext;
+            if (loadSheddingHandler != null) {
+                // Inside the statistics, which count the 503 responses.
+                loadSheddingHandler.setHandler(contextHandler);
+                statisticsHandler.setHandler(loadSheddingHandler);
+            } else {
+                statisticsHandler.setHandler(contextHandler);
+            }
+            server.setHandler(statisticsHandler);
+
+            if (Details.getBoolean(properties, JettyConstants.LOWRESOURCES_ENABLED, false)) {
+                server.addBean(createLowResourceMonitor(properties, server));
+            }
+
+            final AccessLog accessLog =
+                    Details.getBoolean(properties, JettyConstants.ACCESSLOG_ENABLED, false)
+                            ? createAccessLog(properties)
+                            : null;
+            if (accessLog != null && !warmup) {
+                // Managed by the server, so it is started and stopped with it.
+                server.setRequestLog(accessLog);
+            }
+
+            final String metricsPath =
+                    Details.getString(properties, JettyConstants.METRICS_PATH, null);
+            if (metrics != null && metricsPath != null) {
+                String metricsConnectorName = null;
+                final int metricsPort = Details.getInt(properties, JettyConstants.METRICS_PORT, -1);
+                if (metricsPort != -1) {
+                    final ServerConnector metricsConnector =
+                            new ServerConnector(server, new HttpConnectionFactory(http_config));
+                    metricsConnector.setName("metrics"); // $NON-NLS-1$
+                    metricsConnector.setPort(metricsPort);
+                    metricsConnector.setHost(
+                            Details.getString(properties, JettyConstants.METRICS_HOST, null));
+                    metrics.monitor(metricsConnector);
+                    if (!warmup) {
+                        try {
+                            metricsConnector.open();
+                        } catch (IOException e) {
+                            throw new ConfigurationException(pid, e.getMessage(), e);
+                        }
+                    }
+                    connectors.add(metricsConnector);
+                    metricsConnectorName = metricsConnector.getName();
+                }
+                final PrometheusHandler prometheusHandler =
+                        new PrometheusHandler(metrics, pid, metricsPath, metricsConnectorName);
+                prometheusHandler.setHandler(statisticsHandler);
+                server.setHandler(prometheusHandler);
+            }
+
+            final String workerName =
+                    Details.getString(properties, JettyConstants.SESSION_WORKERNAME, null);
+            if (workerName != null) {
+                final DefaultSessionIdManager sessionIdManager =
+                        new DefaultSessionIdManager(server);
+                sessionIdManager.setWorkerName(workerName);
+                server.setSessionIdManager(sessionIdManager);
+            }
+            timer.record("context", phase); // $NON-NLS-1$
+
+            final ServerConnector httpsConnector = getConnector(httpsTask);
+            if (httpsConnector != null) {
+                connectors.add(httpsConnector);
+            }
+            if (!warmup) {
+                connectors.forEach(server::addConnector);
+            }
+            holder.getInitParameters()
+                    .putAll(
+                            createEndpointInitParameters(
+                                    properties, httpConnector, httpsConnector));
+
+            phase = System.nanoTime();
+            try {
+                server.start();
+                final SessionHandler sessionManager = httpContext.getSessionHandler();
+                sessionManager.addEventListener((HttpSessionIdListener) holder.getServlet());
+                final HouseKeeper houseKeeper =
+                        server.getSessionIdManager().getSessionHouseKeeper();
+                houseKeeper.setIntervalSec(
+                        Details.getLong(
+                                properties,
+                                JettyConstants.HOUSEKEEPER_INTERVAL,
+                                houseKeeper.getIntervalSec()));
+            } catch (Exception e) {
+                throw new ConfigurationException(pid, e.getMessage(), e);
+            }
+            timer.record("start", phase); // $NON-NLS-1$
+            if (warmup) {
+                phase = System.nanoTime();
+                warmUp(properties, server, http_config, warmupRequests, statisticsHandler);
+                try {
+                    if (accessLog != null) {
+                        // The warm-up requests are not logged.
+                        accessLog.start();
+                        server.setRequestLog(accessLog);
+                        server.manage(accessLog);
+                    }
+                    for (Connector connector : connectors) {
+                        // The server is running, so it would not start them.
+                        server.addConnector(connector);
+                        connector.start();
+                    }
+                } catch (Exception e) {
+                    throw new ConfigurationException(pid, e.getMessage(), e);
+                }
+                timer.record("warmup", phase); // $NON-NLS-1$
+            }
+            final Map<String, Long> phases = timer.finish();
+            LOG.info("Started http server {} ({})", pid, timer); // $NON-NLS-1$
+
+            if (metrics != null) {
+                metrics.setStartupPhases(phases);
+                final Dictionary<String, Object> serviceProperties = new Hashtable<>();
+                serviceProperties.put(HttpServerMetrics.SERVER_PID, pid);
+                metricsRegistration =
+                        ctx.registerService(HttpServerMetrics.class, metrics, serviceProperties);
+            }
+
+            httpServer = server;
+            activeProperties = Details.copy(properties);
+            this.httpConnector = httpConnector;
+            this.httpsConnector = httpsConnector;
+            this.unixSocketConnector = unixSocketConnector;
+            this.httpContext = httpContext;
+            this.statisticsHandler = statisticsHandler;
+            this.holder = holder;
+        } catch (ConfigurationException | RuntimeException | Error e) {
+            abandon(server, connectors, httpsTask);
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the difference between {@link #activeProperties} and {@code properties} to the
+     * running server. Sessions and connectors that are not affected by the change stay intact.
+     *
+     * @return {@code null} on success, otherwise the reason why the server has to be restarted.
+     */
+    private String reconfigure(Dictionary<String, ?> properties) {
+        final Set<String> changed = Details.changedKeys(activeProperties, properties);
+        for (String key : changed) {
+            if (!THREAD_POOL_KEYS.contains(key)
+                    && !HTTP_CONNECTOR_KEYS.contains(key)
+                    && !HTTPS_CONNECTOR_KEYS.contains(key)
+                    && !CONNECTION_KEYS.contains(key)
+                    && !KEYSTORE_KEYS.contains(key)
+                    && !SESSION_KEYS.contains(key)
+                    && !SERVLET_KEYS.contains(key)
+                    && !SHUTDOWN_KEYS.contains(key)) {
+                return key + " can't be changed on a running server"; // $NON-NLS-1$
+            }
+        }
+
+        try {
+            if (!Collections.disjoint(changed, THREAD_POOL_KEYS)) {
+                resizeThreadPool(properties);
+            }
+
+            final HttpConfiguration http_config = createHttpConfiguration(properties);
+            if (!Collections.disjoint(changed, HTTP_CONNECTOR_KEYS)) {
+                httpConnector =
+                        replaceConnector(
+                                httpConnector,
+                                createHttpConnector(properties, httpServer, http_config));
+            }
+            if (!Collections.disjoint(changed, HTTPS_CONNECTOR_KEYS)) {
+                httpsConnector =
+                        replaceConnector(
+                                httpsConnector,
+                                createHttpsConnector(properties, httpServer, http_config));
+            } else if (httpsConnector != null && !Collections.disjoint(changed, KEYSTORE_KEYS)) {
+                httpsConnector
+                        .getConnectionFactory(SslConnectionFactory.class)
+                        .getSslContextFactory()
+                        .reload(factory -> configureKeyStores(factory, properties));
+            }
+            if (unixSocketConnector != null
+                    && !Collections.disjoint(changed, UNIXSOCKET_CONNECTOR_KEYS)) {
+                unixSocketConnector =
+                        replaceConnector(
+                                unixSocketConnector,
+                                createUnixSocketConnector(properties, httpServer, http_config));
+            }
+            if (!Collections.disjoint(changed, CONNECTION_KEYS)) {
+                // Connectors created above already have the settings.
+                for (AbstractConnector connector :
+                        Arrays.asList(httpConnector, httpsConnector, unixSocketConnector)) {
+                    if (connector != null) {
+                        updateConnector(connector, properties);
+                    }
+                }
+            }
+
+            if (!Collections.disjoint(changed, SESSION_KEYS)) {
+                // Sessions that already exist keep their max inactive interval.
+                httpContext
+                        .getSessionHandler()
+                        .setMaxInactiveInterval(
+                                Details.getInt(
+                                        properties,
+                                        JettyConstants.CONTEXT_SESSIONINACTIVEINTERVAL,
+                                        -1));
+                final HouseKeeper houseKeeper =
+                        httpServer.getSessionIdManager().getSessionHouseKeeper();
+                houseKeeper.setIntervalSec(
+                        Details.getLong(
+                                properties,
+                                JettyConstants.HOUSEKEEPER_INTERVAL,
+                                houseKeeper.getIntervalSec()));
+            }
+
+            final Map<String, String> endpoint =
+                    createEndpointInitParameters(properties, httpConnector, httpsConnector);
+            final Map<String, String> current = new HashMap<>(holder.getInitParameters());
+            current.keySet().retainAll(ENDPOINT_INIT_PARAMETERS);
+            if (!current.equals(endpoint)) {
+                reinitializeServlet(endpoint);
+            }
+        } catch (Exception e) {
+            return "live update failed: " + e; // $NON-NLS-1$
+        }
+
+        activeProperties = Details.copy(properties);
+        return null;
+    }
+
+    /**
+     * Stops accepting connections and waits for the in-flight requests, including async ones, to
+     * complete. The requests still active when the drain timeout expires are cut off by the
+     * following {@link Server#stop()}.
+     */
+    private void drain() throws InterruptedException {
+        final long timeout =
+                Details.getLong(
+                        activeProperties,
+                        JettyConstants.SHUTDOWN_TIMEOUT,
+                        DEFAULT_SHUTDOWN_TIMEOUT);
+        for (Connector connector : httpServer.getConnectors()) {
+            connector.shutdown();
+        }
+        final Future<Void> drained = statisticsHandler.shutdown();
+        try {
+            drained.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            final int active = statisticsHandler.getRequestsActive();
+            // Server.stop() must not wait for the same requests again.
+            drained.cancel(true);
+            LOG.warn(
+                    "Graceful shutdown did not complete within {} ms, {} request(s) cut off",
+                    timeout,
+                    active); // $NON-NLS-1$
+        }
+    }
+
+    /** Warns of the settings in {@code properties} that the shared resources override. */
+    private void warnShared(Dictionary<String, ?> properties) {
+        final List<String> ignored = new ArrayList<>();
+        for (String key : SHARED_KEYS) {
+            if (properties.get(key) != null) {
+                ignored.add(key);
+            }
+        }
+        if (!ignored.isEmpty()) {
+            Collections.sort(ignored);
+            LOG.warn(
+                    "Http server {} uses the shared resources, which ignore {}", // $NON-NLS-1$
+                    pid,
+                    ignored);
+        }
+    }
+
+    private void resizeThreadPool(Dictionary<String, ?> properties) {
+        if (sharedResources != null) {
+            // The shared pool is sized by framework properties.
+            warnShared(properties);
+            return;
+        }
+        final QueuedThreadPool threadPool = (QueuedThreadPool) httpServer.getThreadPool();
+        final int maxThreads = Details.getInt(properties, JettyConstants.HTTP_MAXTHREADS, 200);
+        final int minThreads = Details.getInt(properties, JettyConstants.HTTP_MINTHREADS, 8);
+        final ThreadPoolTuner tuner = httpServer.getBean(ThreadPoolTuner.class);
+        // The max is set first because each setter clamps the other bound.
+        if (tuner != null) {
+            tuner.setBounds(minThreads, maxThreads);
+        } else {
+            threadPool.setMaxThreads(maxThreads);
+        }
+        threadPool.setMinThreads(minThreads);
+        threadPool.setIdleTimeout(
+                Details.getInt(properties, JettyConstants.HTTP_THREADIDLETIMEOUT, 60000));
+    }
+
+    private static ThreadPoolTuner createThreadPoolTuner(
+            Dictionary<String, ?> dictionary, BoundedThreadPool threadPool) {
+        return new ThreadPoolTuner(
+                threadPool,
+                Details.getInt(dictionary, JettyConstants.HTTP_MINTHREADS, 8),
+                Details.getInt(dictionary, JettyConstants.HTTP_MAXTHREADS, 200),
+                Details.getInt(dictionary, JettyConstants.HTTP_ADAPTIVE_TARGETQUEUEWAIT, 10),
+                Details.getInt(dictionary, JettyConstants.HTTP_ADAPTIVE_PERIOD, 1000),
+                Details.getInt(dictionary, JettyConstants.HTTP_ADAPTIVE_SHRINKAFTER, 5));
+    }
+
+    /**
+     * Replaces {@code oldConnector} with {@code newConnector}, either of which may be null. The
+     * old listening socket is closed before the new one is bound so that both may use the same
+     * port, or the same socket path.
+     */
+    private <C extends AbstractConnector> C replaceConnector(C oldConnector, C newConnector)
+            throws Exception {
+        if (oldConnector instanceof ServerConnector) {
+            // Closes the listening socket, established connections stay open.
+            oldConnector.shutdown();
+        } else if (oldConnector != null) {
+            UnixSockets.close(oldConnector);
+        }
+        if (newConnector != null) {
+            openReleased(newConnector);
+            httpServer.addConnector(newConnector);
+            newConnector.start();
+        }
+        if (oldConnector != null) {
+            if (Details.getBoolean(activeProperties, JettyConstants.SHUTDOWN_GRACEFUL, false)) {
+                drain(oldConnector);
+            }
+            // Removing a managed connector also stops it.
+            httpServer.removeConnector(oldConnector);
+            oldConnector.stop();
+        }
+        return newConnector;
+    }
+
+    /**
+     * Binds {@code connector} to the port a replaced connector has just released. The OS holds the
+     * old socket until the acceptor threads blocked on it have woken up, so a bind that fails is
+     * retried for a moment.
+     */
+    private static void openReleased(AbstractConnector connector)
+            throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (connector instanceof ServerConnector) {
+                    ((ServerConnector) connector).open();
+                } else {
+                    UnixSockets.open(connector);
+                }
+                return;
+            } catch (IOException e) {
+                if (!(e.getCause() instanceof BindException) || attempt == BIND_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(BIND_RETRY_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * Waits for the requests on a connector that no longer accepts connections to complete. Its
+     * persistent connections are closed after their current response.
+     */
+    private void drain(Connector connector) throws InterruptedException {
+        final long timeout =
+                Details.getLong(
+                        activeProperties,
+                        JettyConstants.SHUTDOWN_TIMEOUT,
+                        DEFAULT_SHUTDOWN_TIMEOUT);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int active;
+        while ((active = activeRequests(connector)) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(DRAIN_POLL_INTERVAL);
+        }
+        if (active > 0) {
+            LOG.warn(
+                    "{} did not drain within {} ms, {} request(s) cut off",
+                    connector,
+                    timeout,
+                    active); // $NON-NLS-1$
+        }
+    }
+
+    private static int activeRequests(Connector connector) {
+        int active = 0;
+        for (EndPoint endPoint : connector.getConnectedEndPoints()) {
+            Connection connection = endPoint.getConnection();
+            if (connection instanceof SslConnection) {
+                connection = ((SslConnection) connection).getDecryptedEndPoint().getConnection();
+            }
+            if (connection instanceof HttpConnection
+                    && !((HttpConnection) connection).getHttpChannel().getState().isIdle()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Restarts the servlet so that the Http Service is registered again with the new endpoint
+     * properties. The servlet context and its sessions are left running.
+     */
+    private void reinitializeServlet(Map<String, String> endpoint) throws Exception {
+        holder.stop();
+        holder.getInitParameters().keySet().removeAll(ENDPOINT_INIT_PARAMETERS);
+        holder.getInitParameters().putAll(endpoint);
+        holder.start();
+        holder.initialize();
+    }
+
+    /** Returns the init parameters that advertise the connectors of the Http Service. */
+    private static Map<String, String> createEndpointInitParameters(
+            Dictionary<String, ?> properties,
+            ServerConnector httpConnector,
+            ServerConnector httpsConnector) {
+        final Map<String, String> parameters = new Hashtable<>();
+        if (httpConnector != null) {
+            int port = httpConnector.getLocalPort();
+            if (port == -1) port = httpConnector.getPort();
+            parameters.put(JettyConstants.HTTP_PORT, Integer.toString(port));
+            final String host = httpConnector.getHost();
+            if (host != null) parameters.put(JettyConstants.HTTP_HOST, host);
+        }
+        if (httpsConnector != null) {
+            int port = httpsConnector.getLocalPort();
+            if (port == -1) port = httpsConnector.getPort();
+            parameters.put(JettyConstants.HTTPS_PORT, Integer.toString(port));
+            final String host = httpsConnector.getHost();
+            if (host != null) parameters.put(JettyConstants.HTTPS_HOST, host);
+        }
+        final String otherInfo = Details.getString(properties, JettyConstants.OTHER_INFO, null);
+        if (otherInfo != null) parameters.put(JettyConstants.OTHER_INFO, otherInfo);
+        return parameters;
+    }
+
+    private static Set<String> keys(String... keys) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(keys)));
+    }
+
+    private static Set<String> keys(String[] common, String... keys) {
+        final Set<String> set = new HashSet<>(Arrays.asList(common));
+        set.addAll(Arrays.asList(keys));
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Creates the buffer pool of the connectors. Jetty decides per endpoint whether a buffer is
+     * on the heap or direct, so the pool bounds the memory it keeps of each kind.
+     */
+    static ByteBufferPool createByteBufferPool(
+            String type,
+            int maxCapacity,
+            int maxQueueLength,
+            long maxHeapMemory,
+            long maxDirectMemory) {
+        if ("mapped".equalsIgnoreCase(type)) { // $NON-NLS-1$
+            return new MappedByteBufferPool(
+                    -1, maxQueueLength, null, maxHeapMemory, maxDirectMemory);
+        }
+        return new ArrayByteBufferPool(
+                -1, -1, maxCapacity, maxQueueLength, maxHeapMemory, maxDirectMemory);
+    }
+
+    /** Creates the HTTP configuration shared by the connectors. */
+    private static HttpConfiguration createHttpConfiguration(Dictionary<String, ?> dictionary) {
+        final HttpConfiguration http_config = new HttpConfiguration();
+        configureHttp(http_config, dictionary);
+        return http_config;
+    }
+
+    /**
+     * Applies the settings of {@code dictionary} to an HTTP configuration, which may be in use.
+     * Those that are not set go back to their defaults.
+     */
+    private static void configureHttp(
+            HttpConfiguration http_config, Dictionary<String, ?> dictionary) {
+        final HttpConfiguration defaults = new HttpConfiguration();
+        http_config.setOutputBufferSize(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.HTTP_OUTPUTBUFFERSIZE,
+                        defaults.getOutputBufferSize()));
+        http_config.setRequestHeaderSize(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.HTTP_REQUESTHEADERSIZE,
+                        defaults.getRequestHeaderSize()));
+        if (Details.getBoolean(dictionary, JettyConstants.HTTPS_ENABLED, false)) {
+            http_config.setSecureScheme("https"); // $NON-NLS-1$
+            int httpsPort = Details.getInt(dictionary, JettyConstants.HTTPS_PORT, -1);
+            if (httpsPort == -1) {
+                httpsPort = Details.getInt(dictionary, ORG_OSGI_SERVICE_HTTP_PORT_SECURE, 443);
+            }
+            http_config.setSecurePort(httpsPort);
+        } else {
+            http_config.setSecureScheme(defaults.getSecureScheme());
+            http_config.setSecurePort(defaults.getSecurePort());
+        }
+    }
+
+    /**
+     * Applies the {@link #CONNECTION_KEYS} to a running connector without closing its listening
+     * socket. The connections it has already accepted keep their settings.
+     */
+    private static void updateConnector(
+            AbstractConnector connector, Dictionary<String, ?> dictionary) {
+        connector.setIdleTimeout(
+                Details.getInt(dictionary, JettyConstants.HTTP_IDLETIMEOUT, DEFAULT_IDLE_TIMEOUT));
+        // The factories of a connector share its configuration, the https one a copy.
+        for (ConnectionFactory factory : connector.getConnectionFactories()) {
+            if (factory instanceof HttpConfiguration.ConnectionFactory) {
+                configureHttp(
+                        ((HttpConfiguration.ConnectionFactory) factory).getHttpConfiguration(),
+                        dictionary);
+            }
+        }
+        if (connector.getConnectionFactory("h2") != null // $NON-NLS-1$
+                || connector.getConnectionFactory("h2c") != null) { // $NON-NLS-1$
+            Http2.update(connector, dictionary);
+        }
+    }
+
+    /**
+     * Returns the https connector, if enabled, opened and with its SSL context set up, so that
+     * starting it does not load the key store again. During a {@code warmup} only an ephemeral port
+     * is bound.
+     */
+    private ServerConnector prepareHttpsConnector(
+            Dictionary<String, ?> dictionary,
+            Server server,
+            HttpConfiguration http_config,
+            boolean warmup,
+            StartupTimer timer)
+            throws Exception {
+        final long phase = System.nanoTime();
+        final ServerConnector connector;
+        try {
+            connector = createHttpsConnector(dictionary, server, http_config);
+        } catch (IOError e) {
+            throw new ConfigurationException(pid, e.getMessage(), e);
+        }
+        if (connector == null) {
+            return null;
+        }
+        final SslConnectionFactory sslConnectionFactory =
+                connector.getConnectionFactory(SslConnectionFactory.class);
+        final SslContextFactory sslContextFactory = sslConnectionFactory.getSslContextFactory();
+        sslContextFactory.start();
+        // The connector would not stop a bean that is already running when it starts.
+        sslConnectionFactory.manage(sslContextFactory);
+        if (!warmup || connector.getPort() == 0) {
+            try {
+                connector.open();
+            } catch (IOException e) {
+                sslContextFactory.stop();
+                throw e;
+            }
+        }
+        timer.record("https", phase); // $NON-NLS-1$
+        return connector;
+    }
+
+    /**
+     * Sends the warm-up requests through the started server, then forgets them in its statistics
+     * and response cache so that the metrics only count the requests of clients.
+     */
+    private void warmUp(
+            Dictionary<String, ?> properties,
+            Server server,
+            HttpConfiguration http_config,
+            String[] requests,
+            StatisticsHandler statisticsHandler) {
+        final Warmup warmup =
+                new Warmup(
+                        requests,
+                        Details.getInt(properties, JettyConstants.WARMUP_ITERATIONS, 1000),
+                        Details.getInt(properties, JettyConstants.WARMUP_TIMEOUT, 30000));
+        try {
+            final List<Double> latencies = warmup.run(server, http_config);
+            LOG.info(
+                    "Warmed up http server {}, mean latency per tenth {}ms", // $NON-NLS-1$
+                    pid,
+                    latencies);
+            if (metrics != null) {
+                metrics.setWarmupLatencies(latencies);
+            }
+        } catch (Exception e) {
+            // Clients are served anyway, only slower at first.
+            LOG.warn("Warm-up of http server {} failed", pid, e); // $NON-NLS-1$
+        }
+        statisticsHandler.statsReset();
+        if (metrics != null && metrics.getRouteLatencies() != null) {
+            metrics.getRouteLatencies().clear();
+        }
+        // Nor are the responses to the warm-up served to clients.
+        final ResponseCacheHandler cacheHandler =
+                server.getChildHandlerByClass(ResponseCacheHandler.class);
+        if (cacheHandler != null) {
+            cacheHandler.reset();
+        }
+    }
+
+    /**
+     * Cleans up after a server that failed to start: stops it and closes the connectors that were
+     * opened ahead of it, the https one once its task is done.
+     */
+    private void abandon(
+            Server server, List<Connector> connectors, FutureTask<ServerConnector> httpsTask) {
+        metrics = null;
+        try {
+            server.stop();
+        } catch (Exception e) {
+            LOG.warn("Can't stop http server {}", pid, e); // $NON-NLS-1$
+        }
+        for (Connector connector : connectors) {
+            if (connector instanceof ServerConnector) {
+                ((ServerConnector) connector).close();
+            }
+        }
+        try {
+            final ServerConnector httpsConnector = httpsTask.get();
+            if (httpsConnector != null) {
+                httpsConnector.close();
+                httpsConnector.getConnectionFactory(SslConnectionFactory.class)
+                        .getSslContextFactory()
+                        .stop();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Failed to prepare, so nothing was opened.
+            LOG.ignore(e);
+        }
+    }
+
+    /** Waits for {@code task} and returns the connector it prepared. */
+    private ServerConnector getConnector(FutureTask<ServerConnector> task)
+            throws ConfigurationException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConfigurationException(pid, e.getMessage(), e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ConfigurationException) {
+                throw (ConfigurationException) cause;
+            }
+            throw new ConfigurationException(pid, cause.getMessage(), cause);
+        }
+    }
+
+    private ServerConnector createHttpsConnector(
+            Dictionary<String, ?> dictionary, Server server, HttpConfiguration http_config) {
+        ServerConnector httpsConnector = null;
+        if (Details.getBoolean(dictionary, JettyConstants.HTTPS_ENABLED, false)) {
+            // SSL Context Factory for HTTPS and SPDY
+            final SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+
+            // Not sure if the next tree are properly migrated from jetty 8...
+            final String strPath =
+                    Details.getString(dictionary, JettyConstants.SSL_KEYSTORE_PATH, null);
+            if (strPath != null) {
+                sslContextFactory.setKeyStorePath(Paths.get(strPath).toAbsolutePath().toString());
+            } else {
+                sslContextFactory.setKeyStorePath(null);
+            }
+            configureKeyStores(sslContextFactory, dictionary);
+            final String protocol =
+                    Details.getString(
+                            dictionary, JettyConstants.SSL_PROTOCOL, "TLS"); // $NON-NLS-1$
+            sslContextFactory.setProtocol(protocol);
+            sslContextFactory.setProvider(
+                    SslProviders.select(
+                            Details.getStrings(dictionary, JettyConstants.SSL_PROVIDER, null),
+                            protocol));
+            final String algorithm =
+                    Details.getString(dictionary, JettyConstants.SSL_ALGORITHM, null);
+            if (algorithm != null) {
+                sslContextFactory.setKeyManagerFactoryAlgorithm(algorithm);
+            }
+            sslContextFactory.setWantClientAuth(
+                    Details.getBoolean(dictionary, JettyConstants.SSL_WANTCLIENTAUTH, false));
+            sslContextFactory.setNeedClientAuth(
+                    Details.getBoolean(dictionary, JettyConstants.SSL_NEEDCLIENTAUTH, false));
+
+            // Protocols and cipher suites, added to the weak ones Jetty excludes by default.
+            final String[] includeProtocols =
+                    Details.getStrings(dictionary, JettyConstants.SSL_INCLUDEPROTOCOLS, null);
+            if (includeProtocols != null) {
+                sslContextFactory.setIncludeProtocols(includeProtocols);
+            }
+            sslContextFactory.addExcludeProtocols(
+                    Details.getStrings(
+                            dictionary, JettyConstants.SSL_EXCLUDEPROTOCOLS, new String[0]));
+            final String[] includeCipherSuites =
+                    Details.getStrings(dictionary, JettyConstants.SSL_INCLUDECIPHERSUITES, null);
+            if (includeCipherSuites != null) {
+                sslContextFactory.setIncludeCipherSuites(includeCipherSuites);
+            }
+            sslContextFactory.addExcludeCipherSuites(
+                    Details.getStrings(
+                            dictionary, JettyConstants.SSL_EXCLUDECIPHERSUITES, new String[0]));
+
+            // Resumed sessions skip the full handshake.
+            sslContextFactory.setSslSessionCacheSize(
+                    Details.getInt(dictionary, JettyConstants.SSL_SESSIONCACHESIZE, -1));
+            sslContextFactory.setSslSessionTimeout(
+                    Details.getInt(dictionary, JettyConstants.SSL_SESSIONTIMEOUT, -1));
+            sslContextFactory.setRenegotiationAllowed(
+                    Details.getBoolean(dictionary, JettyConstants.SSL_RENEGOTIATIONALLOWED, true));
+            sslContextFactory.setRenegotiationLimit(
+                    Details.getInt(dictionary, JettyConstants.SSL_RENEGOTIATIONLIMIT, 5));
+
+            // HTTPS Configuration
+            final HttpConfiguration https_config = new HttpConfiguration(http_config);
+            https_config.addCustomizer(new SecureRequestCustomizer());
+
+            ConnectionFactory[] factories = null;
+            if (Details.getBoolean(dictionary, JettyConstants.HTTPS_HTTP2, false)) {
+                try {
+                    factories = Http2.secureFactories(sslContextFactory, https_config, dictionary);
+                } catch (LinkageError | IllegalStateException e) {
+                    LOG.warn("HTTP/2 is not available, using HTTP/1.1: {}", e); // $NON-NLS-1$
+                }
+            }
+            if (factories == null) {
+                factories =
+                        new ConnectionFactory[] {
+                            new SslConnectionFactory(
+                                    sslContextFactory, "http/1.1"), // $NON-NLS-1$
+                            new HttpConnectionFactory(https_config)
+                        };
+            }
+
+            // HTTPS connector
+            httpsConnector =
+                    new ServerConnector(
+                            server,
+                            Details.getInt(dictionary, JettyConstants.HTTP_ACCEPTORS, -1),
+                            Details.getInt(dictionary, JettyConstants.HTTP_SELECTORS, -1),
+                            factories);
+            httpsConnector.setName("https"); // $NON-NLS-1$
+            configureConnector(httpsConnector, dictionary);
+            final int scanInterval =
+                    Details.getInt(dictionary, JettyConstants.SSL_KEYSTORE_SCANINTERVAL, 60);
+            if (strPath != null && scanInterval > 0) {
+                // Started and stopped with the connector.
+                final KeyStoreScanner keyStoreScanner = new KeyStoreScanner(sslContextFactory);
+                keyStoreScanner.setScanInterval(scanInterval);
+                httpsConnector.addBean(keyStoreScanner);
+            }
+            int httpsPort = Details.getInt(dictionary, JettyConstants.HTTPS_PORT, -1);
+            if (httpsPort == -1) {
+                httpsPort = Details.getInt(dictionary, ORG_OSGI_SERVICE_HTTP_PORT_SECURE, 443);
+            }
+            httpsConnector.setPort(httpsPort);
+            httpsConnector.setHost(Details.getString(dictionary, JettyConstants.HTTPS_HOST, null));
+        }
+        return httpsConnector;
+    }
+
+    /**
+     * Returns the connector of the Unix domain socket, if one is configured, with a copy of the
+     * HTTP configuration that may restore the client addresses a local reverse proxy passes on.
+     */
+    private AbstractConnector createUnixSocketConnector(
+            Dictionary<String, ?> dictionary, Server server, HttpConfiguration http_config) {
+        final String path = Details.getString(dictionary, JettyConstants.UNIXSOCKET_PATH, null);
+        if (path == null) {
+            return null;
+        }
+        final HttpConfiguration unixsocket_config = new HttpConfiguration(http_config);
+        if (Details.getBoolean(dictionary, JettyConstants.UNIXSOCKET_FORWARDED, false)) {
+            unixsocket_config.addCustomizer(new ForwardedRequestCustomizer());
+        }
+        final HttpConnectionFactory http1 = new HttpConnectionFactory(unixsocket_config);
+        final ConnectionFactory[] factories =
+                Details.getBoolean(dictionary, JettyConstants.UNIXSOCKET_PROXYPROTOCOL, false)
+                        ? new ConnectionFactory[] {
+                            new ProxyConnectionFactory(http1.getProtocol()), http1
+                        }
+                        : new ConnectionFactory[] {http1};
+        final AbstractConnector connector;
+        try {
+            connector =
+                    UnixSockets.newConnector(
+                            server,
+                            path,
+                            Details.getInt(dictionary, JettyConstants.UNIXSOCKET_SELECTORS, -1),
+                            Details.getInt(
+                                    dictionary, JettyConstants.UNIXSOCKET_ACCEPTQUEUESIZE, 0),
+                            factories);
+        } catch (LinkageError e) {
+            LOG.warn("Unix domain sockets are not available: {}", e); // $NON-NLS-1$
+            return null;
+        }
+        connector.setName("unixsocket"); // $NON-NLS-1$
+        connector.setIdleTimeout(
+                Details.getInt(dictionary, JettyConstants.HTTP_IDLETIMEOUT, DEFAULT_IDLE_TIMEOUT));
+        if (metrics != null) {
+            metrics.monitor(connector);
+        }
+        limitConnections(connector, dictionary);
+        return connector;
+    }
+
+    /**
+     * Sets the keystore and trust store settings other than the keystore path, which a running
+     * connector picks up when its factory is reloaded.
+     */
+    private static void configureKeyStores(
+            SslContextFactory sslContextFactory, Dictionary<String, ?> dictionary) {
+        sslContextFactory.setKeyStorePassword(
+                Details.getString(dictionary, JettyConstants.SSL_KEYSTORE_PASSWORD, null));
+        sslContextFactory.setKeyManagerPassword(
+                Details.getString(dictionary, JettyConstants.SSL_KEY_PASSWORD, null));
+        sslContextFactory.setKeyStoreType(
+                Details.getString(
+                        dictionary, JettyConstants.SSL_KEYSTORE_TYPE, "PKCS12")); // $NON-NLS-1$
+        final String trustStorePath =
+                Details.getString(dictionary, JettyConstants.SSL_TRUSTSTORE_PATH, null);
+        if (trustStorePath != null) {
+            sslContextFactory.setTrustStorePath(
+                    Paths.get(trustStorePath).toAbsolutePath().toString());
+        } else {
+            // The keystore doubles as the trust store.
+            sslContextFactory.setTrustStoreResource(null);
+        }
+        sslContextFactory.setTrustStorePassword(
+                Details.getString(dictionary, JettyConstants.SSL_TRUSTSTORE_PASSWORD, null));
+        sslContextFactory.setTrustStoreType(
+                Details.getString(dictionary, JettyConstants.SSL_TRUSTSTORE_TYPE, null));
+    }
+
+    private ServerConnector createHttpConnector(
+            Dictionary<String, ?> dictionary, Server server, HttpConfiguration http_config) {
+        ServerConnector httpConnector = null;
+        if (Details.getBoolean(dictionary, JettyConstants.HTTP_ENABLED, true)) {
+            // HTTP connector
+            httpConnector =
+                    new ServerConnector(
+                            server,
+                            Details.getInt(dictionary, JettyConstants.HTTP_ACCEPTORS, -1),
+                            Details.getInt(dictionary, JettyConstants.HTTP_SELECTORS, -1),
+                            new HttpConnectionFactory(http_config));
+            httpConnector.setName("http"); // $NON-NLS-1$
+            if (Details.getBoolean(dictionary, JettyConstants.HTTP_H2C, false)) {
+                try {
+                    httpConnector.addConnectionFactory(
+                            Http2.cleartextFactory(http_config, dictionary));
+                } catch (LinkageError e) {
+                    LOG.warn("HTTP/2 is not available, using HTTP/1.1: {}", e); // $NON-NLS-1$
+                }
+            }
+            configureConnector(httpConnector, dictionary);
+            int httpPort = Details.getInt(dictionary, JettyConstants.HTTP_PORT, -1);
+            if (httpPort == -1) {
+                httpPort = Details.getInt(dictionary, ORG_OSGI_SERVICE_HTTP_PORT, 80);
+            }
+            httpConnector.setPort(httpPort);
+            httpConnector.setHost(Details.getString(dictionary, JettyConstants.HTTP_HOST, null));
+        }
+        return httpConnector;
+    }
+
+    /** Applies the socket settings shared by the connectors. */
+    private void configureConnector(ServerConnector connector, Dictionary<String, ?> dictionary) {
+        if (metrics != null) {
+            metrics.monitor(connector);
+        }
+        connector.setIdleTimeout(
+                Details.getInt(dictionary, JettyConstants.HTTP_IDLETIMEOUT, DEFAULT_IDLE_TIMEOUT));
+        connector.setAcceptQueueSize(
+                Details.getInt(dictionary, JettyConstants.HTTP_ACCEPTQUEUESIZE, 0));
+        connector.setReuseAddress(
+                Details.getBoolean(dictionary, JettyConstants.HTTP_REUSEADDRESS, true));
+        limitConnections(connector, dictionary);
+    }
+
+    /**
+     * Bounds the open connections and the accept rate of a connector. The limits are managed by
+     * the connector, so they go away with it when a live update replaces it.
+     */
+    private static void limitConnections(
+            AbstractConnector connector, Dictionary<String, ?> dictionary) {
+        final int maxConnections =
+                Details.getInt(dictionary, JettyConstants.HTTP_MAXCONNECTIONS, -1);
+        if (maxConnections > 0) {
+            connector.addBean(new ConnectionLimit(maxConnections, connector));
+        }
+        final int acceptRate = Details.getInt(dictionary, JettyConstants.HTTP_ACCEPTRATE, -1);
+        if (acceptRate > 0) {
+            connector.addBean(new AcceptRateLimit(acceptRate, 1, TimeUnit.SECONDS, connector));
+        }
+    }
+
+    /**
+     * Returns the monitor that shortens the idle timeout of the connections of all connectors while
+     * the server is low on threads or memory.
+     */
+    private static LowResourceMonitor createLowResourceMonitor(
+            Dictionary<String, ?> dictionary, Server server) {
+        final LowResourceMonitor monitor = new LowResourceMonitor(server);
+        monitor.setPeriod(Details.getInt(dictionary, JettyConstants.LOWRESOURCES_PERIOD, 1000));
+        monitor.setLowResourcesIdleTimeout(
+                Details.getInt(dictionary, JettyConstants.LOWRESOURCES_IDLETIMEOUT, 1000));
+        monitor.setMaxMemory(
+                Details.getLong(dictionary, JettyConstants.LOWRESOURCES_MAXMEMORY, 0));
+        monitor.setMonitorThreads(
+                Details.getBoolean(dictionary, JettyConstants.LOWRESOURCES_THREADS, true));
+        // Keep accepting; the connection limits bound how many are open.
+        monitor.setAcceptingInLowResources(true);
+        return monitor;
+    }
+
+    private static RouteLatencies createRouteLatencies(Dictionary<String, ?> dictionary) {
+        if (!Details.getBoolean(dictionary, JettyConstants.METRICS_ROUTES, false)) {
+            return null;
+        }
+        return new RouteLatencies(
+                Details.getInt(dictionary, JettyConstants.METRICS_ROUTES_DEPTH, 1),
+                Details.getInt(dictionary, JettyConstants.METRICS_ROUTES_MAX, 100),
+                Details.getLong(dictionary, JettyConstants.METRICS_ROUTES_WINDOW, 60000));
+    }
+
+    /**
+     * Maps each static alias to a {@link DefaultServlet}. Its longer path wins over the Http
+     * Service servlet, so these requests skip the service registry.
+     */
+    private void addStaticResources(
+            Dictionary<String, ?> dictionary, ServletContextHandler httpContext) {
+        final String[] mappings =
+                Details.getStrings(dictionary, JettyConstants.STATIC_RESOURCES, null);
+        if (mappings == null) {
+            return;
+        }
+        for (String mapping : mappings) {
+            final int separator = mapping.indexOf('=');
+            final String base =
+                    separator > 0 ? resolveResourceBase(mapping.substring(separator + 1)) : null;
+            if (base == null) {
+                LOG.warn("Ignoring static resource mapping {}", mapping); // $NON-NLS-1$
+                continue;
+            }
+            String alias = mapping.substring(0, separator).trim();
+            if (alias.endsWith("/")) { // $NON-NLS-1$
+                alias = alias.substring(0, alias.length() - 1);
+            }
+            final ServletHolder staticHolder =
+                    new ServletHolder("static:" + alias, DefaultServlet.class); // $NON-NLS-1$
+            staticHolder.setInitParameter("resourceBase", base); // $NON-NLS-1$
+            staticHolder.setInitParameter("pathInfoOnly", "true"); // $NON-NLS-1$ //$NON-NLS-2$
+            staticHolder.setInitParameter("dirAllowed", "false"); // $NON-NLS-1$ //$NON-NLS-2$
+            staticHolder.setInitParameter("etags", "true"); // $NON-NLS-1$ //$NON-NLS-2$
+            staticHolder.setInitParameter("acceptRanges", "true"); // $NON-NLS-1$ //$NON-NLS-2$
+            staticHolder.setInitParameter(
+                    "useFileMappedBuffer", // $NON-NLS-1$
+                    String.valueOf(
+                            Details.getBoolean(
+                                    dictionary, JettyConstants.STATIC_MAPPEDBUFFERS, true)));
+            if (Details.getBoolean(dictionary, JettyConstants.STATIC_PRECOMPRESSED, true)) {
+                staticHolder.setInitParameter(
+                        "precompressed", "br=.br,gzip=.gz"); // $NON-NLS-1$ //$NON-NLS-2$
+            }
+            staticHolder.setInitParameter(
+                    "maxCacheSize", // $NON-NLS-1$
+                    String.valueOf(
+                            Details.getInt(
+                                    dictionary,
+                                    JettyConstants.STATIC_CACHE_SIZE,
+                                    256 * 1024 * 1024)));
+            staticHolder.setInitParameter(
+                    "maxCachedFileSize", // $NON-NLS-1$
+                    String.valueOf(
+                            Details.getInt(
+                                    dictionary,
+                                    JettyConstants.STATIC_CACHE_MAXFILESIZE,
+                                    128 * 1024 * 1024)));
+            staticHolder.setInitParameter(
+                    "maxCachedFiles", // $NON-NLS-1$
+                    String.valueOf(
+                            Details.getInt(
+                                    dictionary, JettyConstants.STATIC_CACHE_MAXFILES, 2048)));
+            final String cacheControl =
+                    Details.getString(dictionary, JettyConstants.STATIC_CACHECONTROL, null);
+            if (cacheControl != null) {
+                staticHolder.setInitParameter("cacheControl", cacheControl); // $NON-NLS-1$
+            }
+            // Large files are then written asynchronously instead of blocking the thread.
+            staticHolder.setAsyncSupported(true);
+            httpContext.addServlet(staticHolder, alias + "/*"); // $NON-NLS-1$
+        }
+    }
+
+    /** Returns the resource base URI of a directory or bundle folder, or null if there is none. */
+    private String resolveResourceBase(String location) {
+        location = location.trim();
+        if (location.startsWith("bundle:")) { // $NON-NLS-1$
+            final String bundlePath = location.substring("bundle:".length()); // $NON-NLS-1$
+            final int slash = bundlePath.indexOf('/');
+            final String symbolicName = slash < 0 ? bundlePath : bundlePath.substring(0, slash);
+            final String path = slash < 0 ? "/" : bundlePath.substring(slash); // $NON-NLS-1$
+            for (Bundle bundle : ctx.getBundles()) {
+                if (symbolicName.equals(bundle.getSymbolicName())) {
+                    final URL entry = bundle.getEntry(path);
+                    return entry == null ? null : entry.toExternalForm();
+                }
+            }
+            return null;
+        }
+        final File directory = new File(location).getAbsoluteFile();
+        return directory.isDirectory() ? directory.toURI().toString() : null;
+    }
+
+    private AccessLog createAccessLog(Dictionary<String, ?> dictionary) {
+        final String path = Details.getString(dictionary, JettyConstants.ACCESSLOG_PATH, null);
+        return new AccessLog(
+                path != null
+                        ? new File(path)
+                        : ctx.getDataFile("logs/" + pid + ".access.log"), // $NON-NLS-1$
+                Details.getString(
+                        dictionary, JettyConstants.ACCESSLOG_FORMAT, AccessLog.FORMAT_NCSA),
+                Details.getStrings(
+                        dictionary, JettyConstants.ACCESSLOG_FIELDS, AccessLog.DEFAULT_FIELDS),
+                Details.getInt(dictionary, JettyConstants.ACCESSLOG_BUFFERSIZE, 8192),
+                Details.getLong(dictionary, JettyConstants.ACCESSLOG_ROTATE_SIZE, -1),
+                Details.getString(
+                        dictionary,
+                        JettyConstants.ACCESSLOG_ROTATE_PERIOD,
+                        AccessLog.PERIOD_DAILY),
+                Details.getBoolean(dictionary, JettyConstants.ACCESSLOG_ROTATE_GZIP, false));
+    }
+
+    private static Handler createGzipHandler(Dictionary<String, ?> dictionary, Handler next) {
+        final GzipHandler gzipHandler = new GzipHandler();
+        final String[] mimeTypes =
+                Details.getStrings(dictionary, JettyConstants.COMPRESSION_MIMETYPES, null);
+        if (mimeTypes != null) {
+            gzipHandler.setIncludedMimeTypes(mimeTypes);
+        }
+        final String[] excludedPaths =
+                Details.getStrings(dictionary, JettyConstants.COMPRESSION_EXCLUDEDPATHS, null);
+        if (excludedPaths != null) {
+            gzipHandler.setExcludedPaths(excludedPaths);
+        }
+        gzipHandler.setMinGzipSize(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.COMPRESSION_MINSIZE,
+                        GzipHandler.DEFAULT_MIN_GZIP_SIZE));
+        final int level =
+                Details.getInt(
+                        dictionary, JettyConstants.COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION);
+        gzipHandler.setCompressionLevel(level);
+
+        final long cacheSize =
+                Details.getLong(dictionary, JettyConstants.COMPRESSION_CACHE_SIZE, 0);
+        if (cacheSize > 0) {
+            final CompressedCacheHandler cacheHandler =
+                    new CompressedCacheHandler(
+                            gzipHandler,
+                            cacheSize,
+                            Details.getInt(
+                                    dictionary,
+                                    JettyConstants.COMPRESSION_CACHE_MAXENTRYSIZE,
+                                    256 * 1024));
+            cacheHandler.setHandler(next);
+            gzipHandler.setHandler(cacheHandler);
+        } else {
+            gzipHandler.setHandler(next);
+        }
+        return gzipHandler;
+    }
+
+    private ServletContextHandler createHttpContext(Dictionary<String, ?> dictionary)
+            throws IOException, ConfigurationException {
+        jettyWorkDir =
+                new File(
+                        new File(ctx.getDataFile(""), JETTY_WORK_DIR),
+                        DIR_PREFIX + pid.hashCode());
+        // Left behind if the framework went down before the server was stopped or the directory
+        // was deleted.
+        final String trashPrefix = jettyWorkDir.getName() + TRASH_SUFFIX;
+        final File[] stale =
+                jettyWorkDir
+                        .getParentFile()
+                        .listFiles(file -> file.getName().startsWith(trashPrefix));
+        if (stale != null) {
+            for (File directory : stale) {
+                deleteInBackground(directory);
+            }
+        }
+        deleteInBackground(jettyWorkDir);
+        if (!jettyWorkDir.mkdirs()) {
+            throw new IOException("Can't create directory " + jettyWorkDir.getPath());
+        }
+
+        ServletContextHandler httpContext = new ServletContextHandler();
+        // hack in the mime type for xsd until jetty fixes it (bug 393218)
+        httpContext
+                .getMimeTypes()
+                .addMimeMapping("xsd", "application/xml"); // $NON-NLS-1$ //$NON-NLS-2$
+        httpContext.setAttribute(
+                Activator.INTERNAL_CONTEXT_CLASSLOADER,
+                Thread.currentThread().getContextClassLoader());
+        httpContext.setClassLoader(this.getClass().getClassLoader());
+        httpContext.setContextPath(
+                Details.getString(dictionary, JettyConstants.CONTEXT_PATH, "/")); // $NON-NLS-1$
+
+        httpContext.setAttribute(CONTEXT_TEMPDIR, jettyWorkDir);
+        SessionHandler handler = new SessionHandler();
+        handler.setMaxInactiveInterval(
+                Details.getInt(dictionary, JettyConstants.CONTEXT_SESSIONINACTIVEINTERVAL, -1));
+        handler.setSessionCache(SessionStores.createSessionCache(ctx, pid, dictionary, handler));
+        httpContext.setSessionHandler(handler);
+
+        return httpContext;
+    }
+
+    /**
+     * Renames {@code directory} out of the way and deletes it on a background thread, so that a
+     * work directory full of uploads does not hold up a restart. A directory that can't be renamed
+     * is deleted in place.
+     */
+    private static void deleteInBackground(File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        final File trash;
+        if (directory.getName().contains(TRASH_SUFFIX)) {
+            trash = directory;
+        } else {
+            trash =
+                    new File(
+                            directory.getParentFile(),
+                            directory.getName() + TRASH_SUFFIX + System.nanoTime());
+            if (!directory.renameTo(trash)) {
+                if (!deleteDirectory(directory)) {
+                    throw new IOException("Can't delete directory " + directory.getAbsolutePath());
+                }
+                return;
+            }
+        }
+        if (!DELETING.add(trash)) {
+            return;
+        }
+        final Thread thread =
+                new Thread(
+                        () -> {
+                            try {
+                                if (!deleteDirectory(trash)) {
+                                    LOG.warn(
+                                            "Can't delete directory {}", // $NON-NLS-1$
+                                            trash.getAbsolutePath());
+                                }
+                            } finally {
+                                DELETING.remove(trash);
+                            }
+                        },
+                        "equinox-jetty-workdir-cleanup"); // $NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // deleteDirectory is a convenience method to recursively delete a directory
+    private static boolean deleteDirectory(File directory) {
+        if (directory.exists() && directory.isDirectory()) {
+            File[] files = directory.listFiles();
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        return directory.delete();
+    }
+}
@@ -0,0 +1,175 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.equinox.http.jetty.ms.metrics.RouteMetrics;
+
+/**
+ * A fixed-size, lock-free latency histogram over a sliding window. Buckets are log-linear: 16 per
+ * power of two, so a bucket is at most 1/16 of its value wide. Two slots take turns: each covers
+ * one window and is cleared by the first recorder of the window after next, so readers see between
+ * one and two windows of data. A record racing with that clear may be lost.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Larger values, about 2.4 hours in microseconds, are counted as this. */
+    private static final long MAX_VALUE = (1L << 33) - 1;
+
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final long windowNanos;
+
+    private final Slot[] slots = {new Slot(), new Slot()};
+
+    LatencyHistogram(long windowMillis) {
+        this.windowNanos = Math.max(1, windowMillis) * 1000000;
+    }
+
+    void record(long nanos) {
+        final long micros = Math.min(Math.max(0, nanos / 1000), MAX_VALUE);
+        final long window = System.nanoTime() / windowNanos;
+        final Slot slot = slots[(int) (window & 1)];
+        final long slotWindow = slot.window.get();
+        if (slotWindow != window && slot.window.compareAndSet(slotWindow, window)) {
+            slot.clear();
+        }
+        slot.counts.incrementAndGet(index(micros));
+        slot.total.addAndGet(micros);
+        slot.max.accumulateAndGet(micros, Math::max);
+    }
+
+    /** Whether nothing has been recorded in the current or the previous window. */
+    boolean isIdle() {
+        final long window = System.nanoTime() / windowNanos;
+        for (Slot slot : slots) {
+            final long slotWindow = slot.window.get();
+            if (slotWindow == window || slotWindow == window - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns a consistent copy of the current and the previous window. */
+    RouteMetrics snapshot(String route) {
+        final long window = System.nanoTime() / windowNanos;
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        long total = 0;
+        long max = 0;
+        for (Slot slot : slots) {
+            final long slotWindow = slot.window.get();
+            if (slotWindow != window && slotWindow != window - 1) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                final long bucket = slot.counts.get(i);
+                counts[i] += bucket;
+                count += bucket;
+            }
+            total += slot.total.get();
+            max = Math.max(max, slot.max.get());
+        }
+        return new Snapshot(route, counts, count, total, max);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** Returns the middle of the values counted in the bucket. */
+    static long value(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+
+    private static final class Slot {
+
+        final AtomicLong window = new AtomicLong(Long.MIN_VALUE);
+
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        final AtomicLong total = new AtomicLong();
+
+        final AtomicLong max = new AtomicLong();
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            total.set(0);
+            max.set(0);
+        }
+    }
+
+    private static final class Snapshot implements RouteMetrics {
+
+        private final String route;
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long total;
+
+        private final long max;
+
+        Snapshot(String route, long[] counts, long count, long total, long max) {
+            this.route = route;
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        @Override
+        public String getRoute() {
+            return route;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public long getTotal() {
+            return total;
+        }
+
+        @Override
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(count * Math.min(100, percentile) / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(value(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public long getMax() {
+            return max;
+        }
+    }
+}
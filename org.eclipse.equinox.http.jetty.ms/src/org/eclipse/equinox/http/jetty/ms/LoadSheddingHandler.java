@@ -0,0 +1,66 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Answers 503 with a Retry-After header to a request that waited longer than allowed for a thread
+ * of the {@link BoundedThreadPool}: by then its client has likely given up, and serving it would
+ * only delay the requests queued behind it. The connection is closed after the response.
+ */
+@ManagedObject("Rejects requests that waited too long for a thread")
+class LoadSheddingHandler extends HandlerWrapper {
+
+    private final long maxQueueWait;
+
+    private final String retryAfter;
+
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * @param maxQueueWait the longest a request may wait for a thread, in milliseconds
+     * @param retryAfter the seconds a client is asked to wait before it tries again
+     */
+    LoadSheddingHandler(long maxQueueWait, int retryAfter) {
+        this.maxQueueWait = TimeUnit.MILLISECONDS.toNanos(maxQueueWait);
+        this.retryAfter = Integer.toString(retryAfter);
+    }
+
+    @ManagedAttribute("Requests rejected because they waited too long for a thread")
+    public long getShed() {
+        return shed.sum();
+    }
+
+    @Override
+    public void handle(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        if (baseRequest.getDispatcherType() == DispatcherType.REQUEST
+                && BoundedThreadPool.takeQueueWait() > maxQueueWait) {
+            shed.increment();
+            baseRequest.setHandled(true);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeader.RETRY_AFTER.asString(), retryAfter);
+            response.setHeader(
+                    HttpHeader.CONNECTION.asString(), HttpHeaderValue.CLOSE.asString());
+            return;
+        }
+        super.handle(target, baseRequest, request, response);
+    }
+}
@@ -0,0 +1,141 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.MultiParts;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * Lets the servlets behind it read multipart/form-data requests with {@code getParts()}. Jetty
+ * parses the parts from the input stream only when they are asked for, keeps each in memory up to
+ * the threshold of the {@link MultipartConfigElement} and streams the rest of it to a file in the
+ * spool directory, and fails as soon as a part or the request exceeds its limit. A request that
+ * declares a body longer than the limit is answered 413 before any of it is read.
+ *
+ * <p>Registered as a request listener of the context too, it takes the spooled files of a request
+ * once the request completes, and deletes them on the thread pool rather than on the thread that
+ * completes it, which the next request on the connection waits for.
+ */
+@ManagedObject("Configures and cleans up multipart requests")
+class MultipartHandler extends HandlerWrapper implements ServletRequestListener {
+
+    private static final Logger LOG = Log.getLogger(MultipartHandler.class);
+
+    private final MultipartConfigElement config;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder cleaned = new LongAdder();
+
+    /**
+     * @param location the spool directory, or null for the work directory of the context
+     * @param maxFileSize the bytes a part may have, or -1
+     * @param maxRequestSize the bytes a request may have, or -1
+     * @param fileSizeThreshold the bytes of a part kept in memory
+     */
+    MultipartHandler(String location, long maxFileSize, long maxRequestSize, int fileSizeThreshold)
+            throws IOException {
+        if (location != null) {
+            final File directory = new File(location);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException(
+                        "Can't create multipart location " + directory); // $NON-NLS-1$
+            }
+        }
+        config =
+                new MultipartConfigElement(
+                        location, maxFileSize, maxRequestSize, fileSizeThreshold);
+    }
+
+    @ManagedAttribute("Multipart requests rejected for their declared length")
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @ManagedAttribute("Multipart requests whose parts were released")
+    public long getCleaned() {
+        return cleaned.sum();
+    }
+
+    @Override
+    public void handle(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        if (baseRequest.getDispatcherType() == DispatcherType.REQUEST
+                && isMultipart(request.getContentType())) {
+            final long maxRequestSize = config.getMaxRequestSize();
+            if (maxRequestSize > 0 && request.getContentLengthLong() > maxRequestSize) {
+                rejected.increment();
+                baseRequest.setHandled(true);
+                response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                // The unread body is not worth draining.
+                response.setHeader(
+                        HttpHeader.CONNECTION.asString(), HttpHeaderValue.CLOSE.asString());
+                return;
+            }
+            baseRequest.setAttribute(Request.MULTIPART_CONFIG_ELEMENT, config);
+        }
+        super.handle(target, baseRequest, request, response);
+    }
+
+    private static boolean isMultipart(String contentType) {
+        // Followed by the boundary.
+        return contentType != null
+                && StringUtil.startsWithIgnoreCase(
+                        contentType, MimeTypes.Type.MULTIPART_FORM_DATA.asString());
+    }
+
+    @Override
+    public void requestInitialized(ServletRequestEvent event) {
+        // Configured by handle(), which can still reject it.
+    }
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+        final ServletRequest request = event.getServletRequest();
+        final MultiParts parts = (MultiParts) request.getAttribute(Request.MULTIPARTS);
+        if (parts == null || parts.getContext() != event.getServletContext()) {
+            return;
+        }
+        // The request object is reused for the next request on the connection.
+        request.removeAttribute(Request.MULTIPARTS);
+        try {
+            getServer().getThreadPool().execute(() -> delete(parts));
+        } catch (RejectedExecutionException e) {
+            delete(parts);
+        }
+    }
+
+    private void delete(MultiParts parts) {
+        try {
+            parts.close();
+            cleaned.increment();
+        } catch (Throwable t) {
+            LOG.warn("Can't delete multipart files", t); // $NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.equinox.http.jetty.ms.metrics.ConnectorMetrics;
+import org.eclipse.equinox.http.jetty.ms.metrics.HttpServerMetrics;
+import org.eclipse.equinox.http.jetty.ms.metrics.RouteMetrics;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+/**
+ * Answers scrapes on a path with the server metrics in the Prometheus text exposition format. When
+ * it owns a dedicated connector, nothing else is served there.
+ */
+class PrometheusHandler extends HandlerWrapper {
+
+    private static final String CONTENT_TYPE =
+            "text/plain; version=0.0.4; charset=utf-8"; // $NON-NLS-1$
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final HttpServerMetrics metrics;
+
+    private final String labels;
+
+    private final String path;
+
+    /** Name of the dedicated connector, or null if scrapes come in on the usual connectors. */
+    private final String connectorName;
+
+    PrometheusHandler(HttpServerMetrics metrics, String pid, String path, String connectorName) {
+        this.metrics = metrics;
+        this.labels = "server=\"" + escape(pid) + '"'; // $NON-NLS-1$
+        this.path = path;
+        this.connectorName = connectorName;
+    }
+
+    @Override
+    public void handle(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        final boolean dedicated =
+                connectorName != null
+                        && connectorName.equals(
+                                baseRequest.getHttpChannel().getConnector().getName());
+        if (connectorName == null || dedicated) {
+            if (path.equals(target)
+                    && (HttpMethod.GET.is(request.getMethod())
+                            || HttpMethod.HEAD.is(request.getMethod()))) {
+                baseRequest.setHandled(true);
+                response.setContentType(CONTENT_TYPE);
+                write(response.getWriter());
+                return;
+            }
+            if (dedicated) {
+                baseRequest.setHandled(true);
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+        }
+        super.handle(target, baseRequest, request, response);
+    }
+
+    private void write(Writer out) throws IOException {
+        final StringBuilder text = new StringBuilder(4096);
+        gauge(text, "jetty_threads", "Threads in the pool", metrics.getThreads());
+        gauge(text, "jetty_threads_busy", "Threads running a task", metrics.getBusyThreads());
+        gauge(text, "jetty_threads_idle", "Threads waiting for a task", metrics.getIdleThreads());
+        gauge(text, "jetty_threads_max", "Maximum threads in the pool", metrics.getMaxThreads());
+        gauge(text, "jetty_queue_size", "Tasks waiting for a thread", metrics.getQueueSize());
+        header(text, "jetty_tasks_rejected_total", "Tasks rejected by a full queue", "counter");
+        sample(text, "jetty_tasks_rejected_total", null, metrics.getTasksRejected());
+        header(text, "jetty_threads_resizes_total", "Resizes of the adaptive pool", "counter");
+        for (boolean grown : new boolean[] {true, false}) {
+            text.append("jetty_threads_resizes_total{") // $NON-NLS-1$
+                    .append(labels)
+                    .append(",direction=\"") // $NON-NLS-1$
+                    .append(grown ? "grow" : "shrink") // $NON-NLS-1$ //$NON-NLS-2$
+                    .append("\"} ") // $NON-NLS-1$
+                    .append(metrics.getThreadPoolResizes(grown))
+                    .append('\n');
+        }
+        final double queueWaitMean = metrics.getQueueWaitMean();
+        if (queueWaitMean >= 0) {
+            header(
+                    text,
+                    "jetty_queue_wait_seconds_mean",
+                    "Mean queue wait in the last period of the adaptive pool",
+                    "gauge");
+            sample(text, "jetty_queue_wait_seconds_mean", null, queueWaitMean / 1000);
+        }
+        final int virtualThreads = metrics.getVirtualThreads();
+        if (virtualThreads >= 0) {
+            gauge(
+                    text,
+                    "jetty_virtual_threads",
+                    "Virtual threads running a request",
+                    virtualThreads);
+            gauge(
+                    text,
+                    "jetty_virtual_threads_peak",
+                    "Most virtual threads running requests at the same time",
+                    metrics.getVirtualThreadsPeak());
+            header(
+                    text,
+                    "jetty_virtual_threads_started_total",
+                    "Virtual threads started to run a request",
+                    "counter");
+            sample(
+                    text,
+                    "jetty_virtual_threads_started_total",
+                    null,
+                    metrics.getVirtualThreadsStarted());
+        }
+
+        header(text, "jetty_connections", "Open connections", "gauge");
+        for (ConnectorMetrics connector : metrics.getConnectors()) {
+            sample(text, "jetty_connections", connector, connector.getConnections());
+        }
+        header(text, "jetty_connections_total", "Accepted connections", "counter");
+        for (ConnectorMetrics connector : metrics.getConnectors()) {
+            sample(text, "jetty_connections_total", connector, connector.getConnectionsTotal());
+        }
+        header(
+                text,
+                "jetty_received_bytes_total",
+                "Bytes received by closed connections",
+                "counter");
+        for (ConnectorMetrics connector : metrics.getConnectors()) {
+            sample(text, "jetty_received_bytes_total", connector, connector.getReceivedBytes());
+        }
+        header(text, "jetty_sent_bytes_total", "Bytes sent by closed connections", "counter");
+        for (ConnectorMetrics connector : metrics.getConnectors()) {
+            sample(text, "jetty_sent_bytes_total", connector, connector.getSentBytes());
+        }
+
+        header(text, "jetty_requests_total", "Requests", "counter");
+        sample(text, "jetty_requests_total", null, metrics.getRequests());
+        gauge(text, "jetty_requests_active", "Requests being handled", metrics.getRequestsActive());
+        header(text, "jetty_responses_total", "Responses by status class", "counter");
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            text.append("jetty_responses_total{") // $NON-NLS-1$
+                    .append(labels)
+                    .append(",code=\"") // $NON-NLS-1$
+                    .append(statusClass)
+                    .append("xx\"} ") // $NON-NLS-1$
+                    .append(metrics.getResponses(statusClass))
+                    .append('\n');
+        }
+        header(text, "jetty_response_bytes_total", "Response body bytes", "counter");
+        sample(text, "jetty_response_bytes_total", null, metrics.getResponsesBytes());
+        header(text, "jetty_request_seconds_mean", "Mean request time", "gauge");
+        sample(text, "jetty_request_seconds_mean", null, metrics.getRequestTimeMean() / 1000);
+        header(text, "jetty_request_seconds_max", "Longest request time", "gauge");
+        sample(text, "jetty_request_seconds_max", null, metrics.getRequestTimeMax() / 1000.0);
+        header(
+                text,
+                "jetty_requests_shed_total",
+                "Requests rejected after waiting too long for a thread",
+                "counter");
+        sample(text, "jetty_requests_shed_total", null, metrics.getRequestsShed());
+        header(text, "jetty_cache_hits_total", "Responses served from the cache", "counter");
+        sample(text, "jetty_cache_hits_total", null, metrics.getResponseCacheHits());
+        header(
+                text,
+                "jetty_cache_misses_total",
+                "Requests for cached paths that ran the servlet",
+                "counter");
+        sample(text, "jetty_cache_misses_total", null, metrics.getResponseCacheMisses());
+        header(
+                text,
+                "jetty_cache_evictions_total",
+                "Responses evicted from the cache because they expired or to stay within its size",
+                "counter");
+        sample(text, "jetty_cache_evictions_total", null, metrics.getResponseCacheEvictions());
+        header(
+                text,
+                "jetty_log_events_dropped_total",
+                "Log events dropped because the buffer of the asynchronous log was full",
+                "counter");
+        sample(text, "jetty_log_events_dropped_total", null, metrics.getLogEventsDropped());
+        header(
+                text,
+                "jetty_startup_phase_seconds",
+                "Duration of each phase of the last start",
+                "gauge");
+        for (Map.Entry<String, Long> phase : metrics.getStartupPhases().entrySet()) {
+            text.append("jetty_startup_phase_seconds{") // $NON-NLS-1$
+                    .append(labels)
+                    .append(",phase=\"") // $NON-NLS-1$
+                    .append(escape(phase.getKey()))
+                    .append("\"} ") // $NON-NLS-1$
+                    .append(phase.getValue() / 1000.0)
+                    .append('\n');
+        }
+        final List<Double> warmupLatencies = metrics.getWarmupLatencies();
+        if (!warmupLatencies.isEmpty()) {
+            header(
+                    text,
+                    "jetty_warmup_latency_seconds",
+                    "Mean latency of each tenth of the warm-up requests",
+                    "gauge");
+            for (int i = 0; i < warmupLatencies.size(); i++) {
+                text.append("jetty_warmup_latency_seconds{") // $NON-NLS-1$
+                        .append(labels)
+                        .append(",tenth=\"") // $NON-NLS-1$
+                        .append(i + 1)
+                        .append("\"} ") // $NON-NLS-1$
+                        .append(warmupLatencies.get(i) / 1000.0)
+                        .append('\n');
+            }
+        }
+
+        final Collection<RouteMetrics> routes = metrics.getRoutes();
+        if (!routes.isEmpty()) {
+            header(text, "jetty_route_seconds", "Request latency by route", "summary");
+            for (RouteMetrics route : routes) {
+                final String routeLabels =
+                        labels + ",route=\"" + escape(route.getRoute()) + '"'; // $NON-NLS-1$
+                for (double quantile : QUANTILES) {
+                    text.append("jetty_route_seconds{") // $NON-NLS-1$
+                            .append(routeLabels)
+                            .append(",quantile=\"") // $NON-NLS-1$
+                            .append(quantile)
+                            .append("\"} ") // $NON-NLS-1$
+                            .append(route.getPercentile(quantile * 100) / 1e6)
+                            .append('\n');
+                }
+                text.append("jetty_route_seconds_sum{") // $NON-NLS-1$
+                        .append(routeLabels)
+                        .append("} ") // $NON-NLS-1$
+                        .append(route.getTotal() / 1e6)
+                        .append('\n');
+                text.append("jetty_route_seconds_count{") // $NON-NLS-1$
+                        .append(routeLabels)
+                        .append("} ") // $NON-NLS-1$
+                        .append(route.getCount())
+                        .append('\n');
+            }
+            header(text, "jetty_route_seconds_max", "Longest request by route", "gauge");
+            for (RouteMetrics route : routes) {
+                text.append("jetty_route_seconds_max{") // $NON-NLS-1$
+                        .append(labels)
+                        .append(",route=\"") // $NON-NLS-1$
+                        .append(escape(route.getRoute()))
+                        .append("\"} ") // $NON-NLS-1$
+                        .append(route.getMax() / 1e6)
+                        .append('\n');
+            }
+        }
+
+        out.write(text.toString());
+    }
+
+    private void gauge(StringBuilder text, String name, String help, long value) {
+        header(text, name, help, "gauge"); // $NON-NLS-1$
+        sample(text, name, null, value);
+    }
+
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n'); // $NON-NLS-1$
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n'); // $NON-NLS-1$
+    }
+
+    private void sample(StringBuilder text, String name, ConnectorMetrics connector, Object value) {
+        text.append(name).append('{').append(labels);
+        if (connector != null) {
+            text.append(",connector=\"") // $NON-NLS-1$
+                    .append(escape(connector.getName()))
+                    .append('"');
+        }
+        text.append("} ").append(value).append('\n'); // $NON-NLS-1$
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value)
+                .replace("\\", "\\\\") // $NON-NLS-1$ //$NON-NLS-2$
+                .replace("\"", "\\\"") // $NON-NLS-1$ //$NON-NLS-2$
+                .replace("\n", "\\n"); // $NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,657 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Answers GET requests for the paths it is configured for with the responses the servlets gave
+ * before, for as long as they are fresh, so that an expensive response is built once per TTL
+ * instead of on every hit. A response is fresh for its {@code s-maxage} or {@code max-age}, or else
+ * for the TTL of the longest path that matches; it is not kept if it is not a 200, sets a cookie,
+ * is {@code no-store}, {@code no-cache} or {@code private}, or varies on everything. A response
+ * that varies on request headers is kept once per combination of their values, and an {@code
+ * If-None-Match} that matches the ETag of a kept response is answered 304. Requests with
+ * credentials are neither answered from the cache nor kept.
+ *
+ * <p>Responses are kept by URL, including the host the request was sent to. The concurrent misses
+ * for a URL wait for the first of them to complete, and are then answered from the cache, so a
+ * cold entry runs the servlet once. The kept responses are evicted in least recently used order
+ * once they exceed the budget, which counts their bodies, header fields and keys, or once there are
+ * more of them than allowed, so that requests with ever new query strings or hosts don't grow the
+ * cache past its budget.
+ */
+@ManagedObject("Cache of responses")
+class ResponseCacheHandler extends HandlerWrapper {
+
+    private static final String NO_STORE = "no-store"; // $NON-NLS-1$
+
+    private static final String PRIVATE = "private"; // $NON-NLS-1$
+
+    // Bytes counted for each entry and URL besides their strings, about what the maps take.
+    private static final int OVERHEAD = 128;
+
+    private final Map<String, Long> ttls;
+
+    private final long maxBytes;
+
+    private final int maxEntrySize;
+
+    private final int maxEntries;
+
+    private final long coalesceTimeout;
+
+    // Guarded by entries; in access order, so the eldest entry is the least recently used.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // The names of the headers the responses for a URL vary on, while some are kept.
+    private final Map<String, Variants> varies = new HashMap<>();
+
+    private long bytes;
+
+    // The misses being served, by URL.
+    private final Map<String, CountDownLatch> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param ttls the seconds a response is fresh by default, by path, which may end with "/*"
+     * @param maxBytes the bytes kept in all
+     * @param maxEntrySize the largest body kept
+     * @param maxEntries the most responses kept
+     * @param coalesceTimeout the milliseconds a miss waits for a concurrent one for the same path
+     */
+    ResponseCacheHandler(
+            Map<String, Long> ttls,
+            long maxBytes,
+            int maxEntrySize,
+            int maxEntries,
+            long coalesceTimeout) {
+        this.ttls = ttls;
+        this.maxBytes = maxBytes;
+        this.maxEntrySize = maxEntrySize;
+        this.maxEntries = maxEntries;
+        this.coalesceTimeout = coalesceTimeout;
+    }
+
+    /**
+     * Parses the path TTLs, given as "path=seconds".
+     *
+     * @throws IllegalArgumentException if one is malformed
+     */
+    static Map<String, Long> parseTtls(String[] values) {
+        final Map<String, Long> ttls = new HashMap<>();
+        for (String value : values) {
+            final int equals = value.lastIndexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException(
+                        "Expected path=seconds, not " + value); // $NON-NLS-1$
+            }
+            ttls.put(
+                    value.substring(0, equals).trim(),
+                    Long.valueOf(value.substring(equals + 1).trim()));
+        }
+        return ttls;
+    }
+
+    @ManagedAttribute("Responses served from the cache")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute("Requests for cached paths that ran the servlet")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute("Responses evicted because they expired or to stay within the budget")
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @ManagedAttribute("Number of cached responses")
+    public int getEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute("Bytes of cached responses, about")
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    /** Forgets the kept responses and the counters, for example those of a warm-up. */
+    void reset() {
+        synchronized (entries) {
+            entries.clear();
+            varies.clear();
+            bytes = 0;
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        synchronized (entries) {
+            entries.clear();
+            varies.clear();
+            bytes = 0;
+        }
+    }
+
+    @Override
+    public void handle(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        final Long ttl = ttl(target);
+        if (ttl == null
+                || baseRequest.getDispatcherType() != DispatcherType.REQUEST
+                || !HttpMethod.GET.is(request.getMethod())
+                || request.getHeader(HttpHeader.AUTHORIZATION.asString()) != null) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        final HttpFields requestFields = baseRequest.getHttpFields();
+        final List<String> directives = directives(requestFields, HttpHeader.CACHE_CONTROL);
+        if (directives.contains(NO_STORE)) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        final String uri = uri(request);
+        // A client that asks to revalidate gets a response from the servlet, which is then kept.
+        if (!directives.contains(HttpHeaderValue.NO_CACHE.asString())
+                && !HttpHeaderValue.NO_CACHE.is(requestFields.get(HttpHeader.PRAGMA))) {
+            Entry entry = get(uri, requestFields);
+            if (entry == null) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                final CountDownLatch loader = loading.putIfAbsent(uri, latch);
+                if (loader == null) {
+                    misses.increment();
+                    load(target, baseRequest, request, response, uri, ttl, latch);
+                    return;
+                }
+                // The response of the concurrent miss may not be kept, then this one runs the
+                // servlet too.
+                if (await(loader)) {
+                    entry = get(uri, requestFields);
+                }
+            }
+            if (entry != null) {
+                hits.increment();
+                send(entry, baseRequest, response);
+                return;
+            }
+        }
+        misses.increment();
+        load(target, baseRequest, request, response, uri, ttl, null);
+    }
+
+    private boolean await(CountDownLatch loader) {
+        try {
+            return loader.await(coalesceTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Runs the servlet and keeps its response, then lets the misses waiting for it go. */
+    private void load(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response,
+            String uri,
+            long ttl,
+            CountDownLatch latch)
+            throws IOException, ServletException {
+        final HttpOutput out = baseRequest.getResponse().getHttpOutput();
+        out.setInterceptor(new CachingInterceptor(baseRequest, out.getInterceptor(), uri, ttl));
+        boolean completed = false;
+        try {
+            super.handle(target, baseRequest, request, response);
+            completed = true;
+        } finally {
+            if (latch != null && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Release(uri, latch));
+            } else if (latch != null) {
+                try {
+                    if (completed && baseRequest.isHandled()) {
+                        // Completes the response now rather than after this handler returns, so
+                        // that it is kept by the time the waiting misses look it up.
+                        baseRequest.getResponse().closeOutput();
+                    }
+                } finally {
+                    release(uri, latch);
+                }
+            }
+        }
+    }
+
+    private void release(String uri, CountDownLatch latch) {
+        loading.remove(uri, latch);
+        latch.countDown();
+    }
+
+    private static void send(Entry entry, Request baseRequest, HttpServletResponse response)
+            throws IOException {
+        baseRequest.setHandled(true);
+        for (HttpField field : entry.fields) {
+            response.addHeader(field.getName(), field.getValue());
+        }
+        response.setHeader(
+                HttpHeader.AGE.asString(),
+                Long.toString(
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - entry.stored)));
+        if (entry.etag != null && matches(baseRequest, entry.etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(entry.body.length);
+        response.getOutputStream().write(entry.body);
+    }
+
+    private static boolean matches(Request request, String etag) {
+        final List<String> tags = values(request.getHttpFields(), HttpHeader.IF_NONE_MATCH);
+        final String opaque = opaque(etag);
+        for (String tag : tags) {
+            if ("*".equals(tag) || opaque.equals(opaque(tag))) { // $NON-NLS-1$
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Drops the weak indicator, as If-None-Match compares ETags weakly. */
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag; // $NON-NLS-1$
+    }
+
+    /** Returns the TTL of the longest path that matches {@code target}, or null. */
+    private Long ttl(String target) {
+        Long ttl = ttls.get(target);
+        if (ttl != null) {
+            return ttl;
+        }
+        String path = target;
+        for (int slash = path.lastIndexOf('/'); slash >= 0; slash = path.lastIndexOf('/')) {
+            path = path.substring(0, slash);
+            ttl = ttls.get(path + "/*"); // $NON-NLS-1$
+            if (ttl != null) {
+                return ttl;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the URL of the request, with the scheme and the host and port it was sent to, which
+     * a servlet may build absolute URLs from.
+     */
+    private static String uri(HttpServletRequest request) {
+        final StringBuffer url = request.getRequestURL();
+        final String query = request.getQueryString();
+        return query == null ? url.toString() : url.append('?').append(query).toString();
+    }
+
+    private static String key(String uri, List<String> vary, HttpFields requestFields) {
+        if (vary.isEmpty()) {
+            return uri;
+        }
+        final StringBuilder key = new StringBuilder(uri);
+        for (String name : vary) {
+            key.append('\n').append(requestFields.get(name));
+        }
+        return key.toString();
+    }
+
+    private static List<String> values(HttpFields fields, HttpHeader header) {
+        final QuotedCSV values = new QuotedCSV(true);
+        for (HttpField field : fields.getFields(header)) {
+            values.addValue(field.getValue());
+        }
+        return values.getValues();
+    }
+
+    /** Returns the values of a header whose values are case insensitive, in lower case. */
+    private static List<String> directives(HttpFields fields, HttpHeader header) {
+        final List<String> directives = values(fields, header);
+        directives.replaceAll(directive -> directive.toLowerCase(Locale.ENGLISH));
+        return directives;
+    }
+
+    /** Returns the seconds of the directive, -1 if absent, or 0 if malformed. */
+    private static long seconds(List<String> directives, String name) {
+        for (String directive : directives) {
+            if (directive.startsWith(name + '=')) {
+                try {
+                    return Long.parseLong(directive.substring(name.length() + 1));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private Entry get(String uri, HttpFields requestFields) {
+        synchronized (entries) {
+            final Variants variants = varies.get(uri);
+            if (variants == null) {
+                return null;
+            }
+            final String key = key(uri, variants.names, requestFields);
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.expires - System.nanoTime() <= 0) {
+                entries.remove(key);
+                forget(entry);
+                evictions.increment();
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void put(String uri, List<String> vary, String key, Entry entry) {
+        synchronized (entries) {
+            final Entry old = entries.remove(key);
+            if (old != null) {
+                forget(old);
+            }
+            Variants variants = varies.get(uri);
+            if (variants != null && !variants.names.equals(vary)) {
+                // Keyed by other headers, so no longer found.
+                removeAll(uri);
+                variants = null;
+            }
+            if (variants == null) {
+                variants = new Variants(uri, vary);
+                varies.put(uri, variants);
+                bytes += variants.size;
+            }
+            variants.count++;
+            entries.put(key, entry);
+            bytes += entry.size;
+            for (Iterator<Entry> it = entries.values().iterator();
+                    (bytes > maxBytes || entries.size() > maxEntries) && it.hasNext(); ) {
+                final Entry eldest = it.next();
+                it.remove();
+                forget(eldest);
+                evictions.increment();
+            }
+        }
+    }
+
+    private void removeAll(String uri) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            final Entry entry = it.next();
+            if (entry.uri.equals(uri)) {
+                it.remove();
+                forget(entry);
+                evictions.increment();
+            }
+        }
+    }
+
+    /** Uncounts an entry taken out of {@link #entries}, and its URL with its last variant. */
+    private void forget(Entry entry) {
+        bytes -= entry.size;
+        final Variants variants = varies.get(entry.uri);
+        if (variants != null && --variants.count == 0) {
+            varies.remove(entry.uri);
+            bytes -= variants.size;
+        }
+    }
+
+    /** The headers the responses for a URL vary on, and how many of them are kept. */
+    private static final class Variants {
+
+        final List<String> names;
+
+        final long size;
+
+        int count;
+
+        Variants(String uri, List<String> names) {
+            this.names = names;
+            long size = OVERHEAD + uri.length();
+            for (String name : names) {
+                size += name.length();
+            }
+            this.size = size;
+        }
+    }
+
+    private static final class Entry {
+
+        final String uri;
+
+        final List<HttpField> fields;
+
+        final String etag;
+
+        final byte[] body;
+
+        final long stored = System.nanoTime();
+
+        final long expires;
+
+        // The body, the header fields and the key, in bytes as far as they are Latin-1.
+        final long size;
+
+        Entry(String uri, String key, List<HttpField> fields, String etag, byte[] body, long ttl) {
+            this.uri = uri;
+            this.fields = fields;
+            this.etag = etag;
+            this.body = body;
+            expires = stored + TimeUnit.SECONDS.toNanos(ttl);
+            long size = OVERHEAD + key.length() + body.length;
+            for (HttpField field : fields) {
+                size += field.getName().length() + field.getValue().length();
+            }
+            this.size = size;
+        }
+    }
+
+    /** Lets the misses waiting for an async response go once it completed. */
+    private final class Release implements AsyncListener {
+
+        private final String uri;
+
+        private final CountDownLatch latch;
+
+        Release(String uri, CountDownLatch latch) {
+            this.uri = uri;
+            this.latch = latch;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(uri, latch);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Completes next.
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // Completes next.
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    /** Copies the response the servlet writes, and keeps it once complete if it may be. */
+    private class CachingInterceptor implements HttpOutput.Interceptor {
+
+        private final Request request;
+
+        private final HttpOutput.Interceptor next;
+
+        private final String uri;
+
+        private final long ttl;
+
+        private boolean decided;
+
+        // The committed headers, set once the response is known to be cacheable.
+        private List<HttpField> fields;
+
+        private List<String> vary;
+
+        private long freshness;
+
+        // Null once the response is known not to be kept.
+        private ByteArrayOutputStream copy;
+
+        CachingInterceptor(Request request, HttpOutput.Interceptor next, String uri, long ttl) {
+            this.request = request;
+            this.next = next;
+            this.uri = uri;
+            this.ttl = ttl;
+        }
+
+        @Override
+        public HttpOutput.Interceptor getNextInterceptor() {
+            return next;
+        }
+
+        @Override
+        public boolean isOptimizedForDirectBuffers() {
+            return false;
+        }
+
+        @Override
+        public void write(ByteBuffer content, boolean complete, Callback callback) {
+            if (!decided) {
+                decided = true;
+                decide();
+            }
+            if (copy != null) {
+                if (copy.size() + content.remaining() > maxEntrySize) {
+                    copy = null;
+                } else {
+                    try {
+                        BufferUtil.writeTo(content.duplicate(), copy);
+                    } catch (IOException e) {
+                        copy = null;
+                    }
+                }
+            }
+            if (complete && copy != null) {
+                final ByteArrayOutputStream body = copy;
+                copy = null;
+                final String key = key(uri, vary, request.getHttpFields());
+                put(
+                        uri,
+                        vary,
+                        key,
+                        new Entry(
+                                uri,
+                                key,
+                                fields,
+                                request.getResponse().getHttpFields().get(HttpHeader.ETAG),
+                                body.toByteArray(),
+                                freshness));
+            }
+            next.write(content, complete, callback);
+        }
+
+        /** Called on the first write, when the headers are final. */
+        private void decide() {
+            final HttpFields responseFields = request.getResponse().getHttpFields();
+            if (request.getResponse().getStatus() != HttpServletResponse.SC_OK
+                    || responseFields.contains(HttpHeader.SET_COOKIE)
+                    || responseFields.contains(HttpHeader.SET_COOKIE2)) {
+                return;
+            }
+            final List<String> directives = directives(responseFields, HttpHeader.CACHE_CONTROL);
+            if (directives.contains(NO_STORE)
+                    || directives.contains(HttpHeaderValue.NO_CACHE.asString())
+                    || directives.contains(PRIVATE)) {
+                return;
+            }
+            final List<String> names = new ArrayList<>();
+            for (String name : directives(responseFields, HttpHeader.VARY)) {
+                if ("*".equals(name)) { // $NON-NLS-1$
+                    return;
+                }
+                names.add(name);
+            }
+            long seconds = seconds(directives, "s-maxage"); // $NON-NLS-1$
+            if (seconds < 0) {
+                seconds = seconds(directives, "max-age"); // $NON-NLS-1$
+            }
+            if (seconds < 0) {
+                seconds = ttl;
+            }
+            if (seconds <= 0) {
+                return;
+            }
+            fields = new ArrayList<>(responseFields.size());
+            for (HttpField field : responseFields) {
+                final HttpHeader header = field.getHeader();
+                if (header != HttpHeader.DATE
+                        && header != HttpHeader.CONNECTION
+                        && header != HttpHeader.CONTENT_LENGTH
+                        && header != HttpHeader.TRANSFER_ENCODING) {
+                    fields.add(field);
+                }
+            }
+            vary = names;
+            freshness = seconds;
+            copy = new ByteArrayOutputStream();
+        }
+    }
+}
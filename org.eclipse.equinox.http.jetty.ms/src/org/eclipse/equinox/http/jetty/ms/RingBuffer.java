@@ -0,0 +1,74 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded queue for many producers and one consumer that takes no lock (Vyukov's algorithm). A
+ * slot may be written when its sequence equals the position claimed by a producer, and read when
+ * it is one more.
+ */
+class RingBuffer<E> {
+
+    private final Object[] elements;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only read and written by the consumer.
+    private long head;
+
+    /** The capacity is rounded up to a power of two. */
+    RingBuffer(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /** Returns false, without waiting, if the buffer is full. */
+    boolean offer(E element) {
+        long position = tail.get();
+        for (; ; ) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /** Consumer only; returns null if the buffer is empty. */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        final E element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, head + mask + 1);
+        head++;
+        return element;
+    }
+
+    /** Consumer only. */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
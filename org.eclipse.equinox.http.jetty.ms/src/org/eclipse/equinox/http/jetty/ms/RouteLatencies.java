@@ -0,0 +1,98 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.equinox.http.jetty.ms.metrics.RouteMetrics;
+
+/**
+ * Latency histograms of the requests handled by the Http Service servlet, keyed by the leading
+ * segments of the request path. The wrapping servlet does not see which whiteboard pattern matched,
+ * so the path prefix stands in for the route. Only a response below 400 opens a route, so paths
+ * that nothing is registered at don't take up keys. Past the key limit, the routes that have been
+ * idle for a whole window are dropped at most once a window, and requests to new routes count
+ * under {@link #OTHER} until some are.
+ */
+class RouteLatencies {
+
+    static final String OTHER = "other"; // $NON-NLS-1$
+
+    private final int depth;
+
+    private final int maxRoutes;
+
+    private final long windowMillis;
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+
+    RouteLatencies(int depth, int maxRoutes, long windowMillis) {
+        this.depth = Math.max(1, depth);
+        this.maxRoutes = maxRoutes;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @param status the status of the response, which a route is opened for only if below 400
+     */
+    void record(HttpServletRequest request, int status, long nanos) {
+        String route = route(request);
+        LatencyHistogram histogram = histograms.get(route);
+        if (histogram == null) {
+            if (status >= 400 || histograms.size() >= maxRoutes && !evictIdle()) {
+                route = OTHER;
+            }
+            histogram =
+                    histograms.computeIfAbsent(route, key -> new LatencyHistogram(windowMillis));
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Drops the routes idle for a whole window, unless that was tried less than a window ago.
+     * Returns whether there is room for a new route. A record racing with the drop may be lost.
+     */
+    private boolean evictIdle() {
+        final long now = System.nanoTime();
+        final long next = nextEviction.get();
+        if (now - next < 0
+                || !nextEviction.compareAndSet(next, now + Math.max(1, windowMillis) * 1000000)) {
+            return false;
+        }
+        histograms.entrySet()
+                .removeIf(entry -> !OTHER.equals(entry.getKey()) && entry.getValue().isIdle());
+        return histograms.size() < maxRoutes;
+    }
+
+    /** Forgets all routes, such as those only the warm-up requests went to. */
+    void clear() {
+        histograms.clear();
+    }
+
+    Collection<RouteMetrics> snapshot() {
+        final Collection<RouteMetrics> routes = new ArrayList<>(histograms.size());
+        histograms.forEach((route, histogram) -> routes.add(histogram.snapshot(route)));
+        return routes;
+    }
+
+    /** Returns the first {@link #depth} segments of the path within the context. */
+    private String route(HttpServletRequest request) {
+        final String pathInfo = request.getPathInfo();
+        final String path =
+                pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+        int end = 0;
+        for (int segment = 0; segment < depth; segment++) {
+            end = path.indexOf('/', end + 1);
+            if (end < 0) {
+                return path.isEmpty() ? "/" : path; // $NON-NLS-1$
+            }
+        }
+        return path.substring(0, end);
+    }
+}
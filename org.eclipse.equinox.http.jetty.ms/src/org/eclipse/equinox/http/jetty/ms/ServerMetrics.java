@@ -0,0 +1,304 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.equinox.http.jetty.ms.metrics.ConnectorMetrics;
+import org.eclipse.equinox.http.jetty.ms.metrics.HttpServerMetrics;
+import org.eclipse.equinox.http.jetty.ms.metrics.RouteMetrics;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Reads the counters Jetty keeps anyway: the thread pool's atomic counts, a {@link
+ * ConnectionStatistics} per connector name and the {@link StatisticsHandler} around the context.
+ */
+class ServerMetrics implements HttpServerMetrics {
+
+    private final ThreadPool threadPool;
+
+    private final StatisticsHandler statisticsHandler;
+
+    /** Null if requests are not shed. */
+    private final LoadSheddingHandler loadSheddingHandler;
+
+    /** Null if the pool is not adaptive. */
+    private final ThreadPoolTuner threadPoolTuner;
+
+    /** Null if route latencies are not recorded. */
+    private final RouteLatencies routeLatencies;
+
+    // By connector name, so a connector replaced by a live update keeps counting.
+    private final Map<String, ConnectionStatistics> connectionStatistics =
+            new ConcurrentHashMap<>();
+
+    private volatile Map<String, Long> startupPhases = Collections.emptyMap();
+
+    private volatile List<Double> warmupLatencies = Collections.emptyList();
+
+    /** Null if responses are not cached. */
+    private volatile ResponseCacheHandler responseCache;
+
+    /** Null if requests do not run on virtual threads. */
+    private volatile VirtualThreadExecutor virtualThreads;
+
+    ServerMetrics(
+            ThreadPool threadPool,
+            StatisticsHandler statisticsHandler,
+            LoadSheddingHandler loadSheddingHandler,
+            ThreadPoolTuner threadPoolTuner,
+            RouteLatencies routeLatencies) {
+        this.threadPool = threadPool;
+        this.statisticsHandler = statisticsHandler;
+        this.loadSheddingHandler = loadSheddingHandler;
+        this.threadPoolTuner = threadPoolTuner;
+        this.routeLatencies = routeLatencies;
+    }
+
+    RouteLatencies getRouteLatencies() {
+        return routeLatencies;
+    }
+
+    void setStartupPhases(Map<String, Long> startupPhases) {
+        this.startupPhases = startupPhases;
+    }
+
+    void setResponseCache(ResponseCacheHandler responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    void setVirtualThreads(VirtualThreadExecutor virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    void setWarmupLatencies(List<Double> warmupLatencies) {
+        this.warmupLatencies = Collections.unmodifiableList(warmupLatencies);
+    }
+
+    /** Counts the connections of {@code connector} under its name. */
+    void monitor(AbstractConnector connector) {
+        final ConnectionStatistics statistics =
+                connectionStatistics.computeIfAbsent(
+                        connector.getName(),
+                        name -> {
+                            final ConnectionStatistics created = new ConnectionStatistics();
+                            // Not managed by the connector, which is stopped on a live update.
+                            LifeCycle.start(created);
+                            return created;
+                        });
+        connector.addBean(statistics, false);
+    }
+
+    @Override
+    public int getThreads() {
+        return threadPool.getThreads();
+    }
+
+    @Override
+    public int getBusyThreads() {
+        if (threadPool instanceof QueuedThreadPool) {
+            return ((QueuedThreadPool) threadPool).getBusyThreads();
+        }
+        return threadPool.getThreads() - threadPool.getIdleThreads();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return threadPool.getIdleThreads();
+    }
+
+    @Override
+    public int getMaxThreads() {
+        if (threadPool instanceof ThreadPool.SizedThreadPool) {
+            return ((ThreadPool.SizedThreadPool) threadPool).getMaxThreads();
+        }
+        return -1;
+    }
+
+    @Override
+    public int getQueueSize() {
+        if (threadPool instanceof QueuedThreadPool) {
+            return ((QueuedThreadPool) threadPool).getQueueSize();
+        }
+        return -1;
+    }
+
+    @Override
+    public long getTasksRejected() {
+        if (threadPool instanceof BoundedThreadPool) {
+            return ((BoundedThreadPool) threadPool).getRejected();
+        }
+        return 0;
+    }
+
+    @Override
+    public long getThreadPoolResizes(boolean grown) {
+        if (threadPoolTuner == null) {
+            return 0;
+        }
+        return grown ? threadPoolTuner.getGrown() : threadPoolTuner.getShrunk();
+    }
+
+    @Override
+    public double getQueueWaitMean() {
+        return threadPoolTuner == null ? -1 : threadPoolTuner.getQueueWaitMean();
+    }
+
+    @Override
+    public int getVirtualThreads() {
+        final VirtualThreadExecutor executor = virtualThreads;
+        return executor == null ? -1 : executor.getActiveThreads();
+    }
+
+    @Override
+    public int getVirtualThreadsPeak() {
+        final VirtualThreadExecutor executor = virtualThreads;
+        return executor == null ? -1 : executor.getMaxActiveThreads();
+    }
+
+    @Override
+    public long getVirtualThreadsStarted() {
+        final VirtualThreadExecutor executor = virtualThreads;
+        return executor == null ? 0 : executor.getTasks();
+    }
+
+    @Override
+    public Collection<ConnectorMetrics> getConnectors() {
+        final Collection<ConnectorMetrics> connectors = new ArrayList<>();
+        connectionStatistics.forEach(
+                (name, statistics) -> connectors.add(new Connector(name, statistics)));
+        return connectors;
+    }
+
+    @Override
+    public long getRequests() {
+        return statisticsHandler.getRequests();
+    }
+
+    @Override
+    public int getRequestsActive() {
+        return statisticsHandler.getRequestsActive();
+    }
+
+    @Override
+    public long getResponses(int statusClass) {
+        switch (statusClass) {
+            case 1:
+                return statisticsHandler.getResponses1xx();
+            case 2:
+                return statisticsHandler.getResponses2xx();
+            case 3:
+                return statisticsHandler.getResponses3xx();
+            case 4:
+                return statisticsHandler.getResponses4xx();
+            case 5:
+                return statisticsHandler.getResponses5xx();
+            default:
+                throw new IllegalArgumentException("Not a status class: " + statusClass);
+        }
+    }
+
+    @Override
+    public long getResponsesBytes() {
+        return statisticsHandler.getResponsesBytesTotal();
+    }
+
+    @Override
+    public double getRequestTimeMean() {
+        return statisticsHandler.getRequestTimeMean();
+    }
+
+    @Override
+    public long getRequestTimeMax() {
+        return statisticsHandler.getRequestTimeMax();
+    }
+
+    @Override
+    public long getRequestsShed() {
+        return loadSheddingHandler == null ? 0 : loadSheddingHandler.getShed();
+    }
+
+    @Override
+    public long getResponseCacheHits() {
+        final ResponseCacheHandler cache = responseCache;
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    @Override
+    public long getResponseCacheMisses() {
+        final ResponseCacheHandler cache = responseCache;
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    @Override
+    public long getResponseCacheEvictions() {
+        final ResponseCacheHandler cache = responseCache;
+        return cache == null ? 0 : cache.getEvictions();
+    }
+
+    @Override
+    public long getLogEventsDropped() {
+        final AsyncLog log = EquinoxStdErrLog.getAsyncLog();
+        return log == null ? 0 : log.getDropped();
+    }
+
+    @Override
+    public Collection<RouteMetrics> getRoutes() {
+        return routeLatencies == null ? Collections.emptyList() : routeLatencies.snapshot();
+    }
+
+    @Override
+    public Map<String, Long> getStartupPhases() {
+        return startupPhases;
+    }
+
+    @Override
+    public List<Double> getWarmupLatencies() {
+        return warmupLatencies;
+    }
+
+    private static final class Connector implements ConnectorMetrics {
+
+        private final String name;
+
+        private final ConnectionStatistics statistics;
+
+        Connector(String name, ConnectionStatistics statistics) {
+            this.name = name;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getConnections() {
+            return statistics.getConnections();
+        }
+
+        @Override
+        public long getConnectionsTotal() {
+            return statistics.getConnectionsTotal();
+        }
+
+        @Override
+        public long getReceivedBytes() {
+            return statistics.getReceivedBytes();
+        }
+
+        @Override
+        public long getSentBytes() {
+            return statistics.getSentBytes();
+        }
+    }
+}
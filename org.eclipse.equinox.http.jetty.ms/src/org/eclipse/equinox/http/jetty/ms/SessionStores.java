@@ -0,0 +1,202 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Dictionary;
+import java.util.Properties;
+
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.DatabaseAdaptor;
+import org.eclipse.jetty.server.session.DefaultSessionCache;
+import org.eclipse.jetty.server.session.FileSessionDataStore;
+import org.eclipse.jetty.server.session.JDBCSessionDataStore;
+import org.eclipse.jetty.server.session.JDBCSessionDataStore.SessionTableSchema;
+import org.eclipse.jetty.server.session.NullSessionDataStore;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.ConfigurationException;
+
+/** Builds the session cache and data store of a context from the session.* settings. */
+final class SessionStores {
+
+    private static final Logger LOG = Log.getLogger(SessionStores.class);
+
+    static final String MEMORY = "memory"; // $NON-NLS-1$
+
+    static final String FILE = "file"; // $NON-NLS-1$
+
+    static final String JDBC = "jdbc"; // $NON-NLS-1$
+
+    private SessionStores() {}
+
+    static SessionCache createSessionCache(
+            BundleContext ctx, String pid, Dictionary<String, ?> dictionary, SessionHandler handler)
+            throws IOException, ConfigurationException {
+        final String type = Details.getString(dictionary, JettyConstants.SESSION_STORE, MEMORY);
+        final boolean jdbc = JDBC.equalsIgnoreCase(type);
+
+        final int maxSessions =
+                Details.getInt(dictionary, JettyConstants.SESSION_CACHE_MAXSESSIONS, -1);
+        final DefaultSessionCache cache =
+                maxSessions > 0
+                        ? new BoundedSessionCache(handler, maxSessions)
+                        : new DefaultSessionCache(handler);
+        // Other nodes may change a shared session, so it is read again by each request, and
+        // written before the response lets the client send the next one, maybe to another node.
+        cache.setEvictionPolicy(
+                Details.getInt(
+                        dictionary,
+                        JettyConstants.SESSION_CACHE_EVICTIONIDLE,
+                        jdbc ? SessionCache.EVICT_ON_SESSION_EXIT : SessionCache.NEVER_EVICT));
+        cache.setFlushOnResponseCommit(jdbc);
+        cache.setSaveOnInactiveEviction(
+                Details.getBoolean(dictionary, JettyConstants.SESSION_CACHE_SAVEONEVICTION, false));
+
+        final AbstractSessionDataStore store;
+        if (FILE.equalsIgnoreCase(type)) {
+            final String path =
+                    Details.getString(dictionary, JettyConstants.SESSION_STORE_PATH, null);
+            final File storeDir =
+                    path != null
+                            ? new File(path)
+                            : ctx.getDataFile("sessions/" + pid); // $NON-NLS-1$
+            if (!storeDir.isDirectory() && !storeDir.mkdirs()) {
+                throw new IOException("Can't create directory " + storeDir.getPath());
+            }
+            final FileSessionDataStore fileStore = new FileSessionDataStore();
+            fileStore.setStoreDir(storeDir);
+            // A session whose classes are gone after an update is dropped, not kept failing.
+            fileStore.setDeleteUnrestorableFiles(true);
+            cache.setRemoveUnloadableSessions(true);
+            store = writeBehind(dictionary, fileStore, 1000);
+        } else if (jdbc) {
+            store = writeBehind(dictionary, createJdbcSessionDataStore(ctx, dictionary), 0);
+        } else {
+            if (!MEMORY.equalsIgnoreCase(type)) {
+                LOG.warn(
+                        "Unknown session store {}, sessions are kept in memory", // $NON-NLS-1$
+                        type);
+            }
+            // What the session handler sets when it creates the cache itself.
+            cache.setSessionDataStore(new NullSessionDataStore());
+            return cache;
+        }
+        store.setSavePeriodSec(
+                Details.getInt(dictionary, JettyConstants.SESSION_STORE_SAVEPERIOD, 0));
+        cache.setSessionDataStore(store);
+        return cache;
+    }
+
+    private static JDBCSessionDataStore createJdbcSessionDataStore(
+            BundleContext ctx, Dictionary<String, ?> dictionary)
+            throws ConfigurationException {
+        final String url = Details.getString(dictionary, JettyConstants.SESSION_JDBC_URL, null);
+        if (url == null) {
+            throw new ConfigurationException(
+                    JettyConstants.SESSION_JDBC_URL,
+                    "Required by the jdbc session store"); // $NON-NLS-1$
+        }
+        final Properties info = new Properties();
+        final String user = Details.getString(dictionary, JettyConstants.SESSION_JDBC_USER, null);
+        if (user != null) {
+            info.setProperty("user", user); // $NON-NLS-1$
+        }
+        final String password =
+                Details.getString(dictionary, JettyConstants.SESSION_JDBC_PASSWORD, null);
+        if (password != null) {
+            info.setProperty("password", password); // $NON-NLS-1$
+        }
+        final ConnectionPool pool;
+        try {
+            pool =
+                    new ConnectionPool(
+                            ctx,
+                            Details.getString(dictionary, JettyConstants.SESSION_JDBC_DRIVER, null),
+                            url,
+                            info,
+                            Details.getInt(
+                                    dictionary, JettyConstants.SESSION_JDBC_POOL_MAXSIZE, 8),
+                            Details.getLong(
+                                    dictionary, JettyConstants.SESSION_JDBC_POOL_TIMEOUT, 5000));
+        } catch (SQLException e) {
+            throw new ConfigurationException(JettyConstants.SESSION_JDBC_URL, e.getMessage(), e);
+        }
+        final DatabaseAdaptor adaptor = new DatabaseAdaptor();
+        adaptor.setDatasource(pool);
+
+        final SessionTableSchema schema = new SessionTableSchema();
+        schema.setTableName(
+                Details.getString(
+                        dictionary,
+                        JettyConstants.SESSION_JDBC_TABLE,
+                        "JettySessions")); // $NON-NLS-1$
+        schema.setSchemaName(
+                Details.getString(dictionary, JettyConstants.SESSION_JDBC_SCHEMA, null));
+        final String[] columns =
+                Details.getStrings(dictionary, JettyConstants.SESSION_JDBC_COLUMNS, new String[0]);
+        for (String mapping : columns) {
+            final int separator = mapping.indexOf('=');
+            final String column = mapping.substring(separator + 1).trim();
+            switch (separator < 0 ? mapping : mapping.substring(0, separator).trim()) {
+                case "id": // $NON-NLS-1$
+                    schema.setIdColumn(column);
+                    break;
+                case "contextPath": // $NON-NLS-1$
+                    schema.setContextPathColumn(column);
+                    break;
+                case "virtualHost": // $NON-NLS-1$
+                    schema.setVirtualHostColumn(column);
+                    break;
+                case "lastNode": // $NON-NLS-1$
+                    schema.setLastNodeColumn(column);
+                    break;
+                case "accessTime": // $NON-NLS-1$
+                    schema.setAccessTimeColumn(column);
+                    break;
+                case "lastAccessTime": // $NON-NLS-1$
+                    schema.setLastAccessTimeColumn(column);
+                    break;
+                case "createTime": // $NON-NLS-1$
+                    schema.setCreateTimeColumn(column);
+                    break;
+                case "cookieTime": // $NON-NLS-1$
+                    schema.setCookieTimeColumn(column);
+                    break;
+                case "lastSavedTime": // $NON-NLS-1$
+                    schema.setLastSavedTimeColumn(column);
+                    break;
+                case "expiryTime": // $NON-NLS-1$
+                    schema.setExpiryTimeColumn(column);
+                    break;
+                case "maxInterval": // $NON-NLS-1$
+                    schema.setMaxIntervalColumn(column);
+                    break;
+                case "map": // $NON-NLS-1$
+                    schema.setMapColumn(column);
+                    break;
+                default:
+                    throw new ConfigurationException(
+                            JettyConstants.SESSION_JDBC_COLUMNS,
+                            "Unknown session property in " + mapping); // $NON-NLS-1$
+            }
+        }
+
+        final JDBCSessionDataStore store = new JDBCSessionDataStore();
+        store.setDatabaseAdaptor(adaptor);
+        store.setSessionTableSchema(schema);
+        // Stopped with the store, which closes the idle connections.
+        store.addBean(pool);
+        return store;
+    }
+
+    private static AbstractSessionDataStore writeBehind(
+            Dictionary<String, ?> dictionary, AbstractSessionDataStore store, long dflt) {
+        final long interval =
+                Details.getLong(dictionary, JettyConstants.SESSION_STORE_WRITEBEHIND, dflt);
+        return interval > 0 ? new WriteBehindSessionDataStore(store, interval) : store;
+    }
+}
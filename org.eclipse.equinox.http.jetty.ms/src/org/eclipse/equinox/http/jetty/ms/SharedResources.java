@@ -0,0 +1,91 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Thread pool, scheduler and buffer pool shared by all the servers of this bundle. They are
+ * registered as services so that other bundles can reuse them instead of creating their own.
+ */
+class SharedResources {
+
+    private static final String NAME = "equinox-jetty-shared"; // $NON-NLS-1$
+
+    private final QueuedThreadPool threadPool;
+
+    private final ScheduledExecutorScheduler scheduler;
+
+    private final ByteBufferPool byteBufferPool;
+
+    private final List<ServiceRegistration<?>> registrations = new ArrayList<>();
+
+    SharedResources(BundleContext context) {
+        threadPool =
+                new QueuedThreadPool(
+                        Details.getIntProp(context, JettyConstants.HTTP_MAXTHREADS, 200),
+                        Details.getIntProp(context, JettyConstants.HTTP_MINTHREADS, 8));
+        threadPool.setName(NAME);
+        scheduler = new ScheduledExecutorScheduler(NAME + "-scheduler", false); // $NON-NLS-1$
+        byteBufferPool =
+                JettyServer.createByteBufferPool(
+                        Details.getStringProp(context, JettyConstants.BUFFERPOOL_TYPE, null),
+                        Details.getIntProp(context, JettyConstants.BUFFERPOOL_MAXCAPACITY, -1),
+                        Details.getIntProp(context, JettyConstants.BUFFERPOOL_MAXQUEUELENGTH, -1),
+                        Details.getLongProp(context, JettyConstants.BUFFERPOOL_MAXHEAPMEMORY, -1),
+                        Details.getLongProp(
+                                context, JettyConstants.BUFFERPOOL_MAXDIRECTMEMORY, -1));
+    }
+
+    void start(BundleContext context) throws Exception {
+        threadPool.start();
+        scheduler.start();
+
+        register(
+                context,
+                new String[] {Executor.class.getName(), ThreadPool.class.getName()},
+                threadPool);
+        register(context, new String[] {Scheduler.class.getName()}, scheduler);
+        register(context, new String[] {ByteBufferPool.class.getName()}, byteBufferPool);
+    }
+
+    void stop() throws Exception {
+        for (ServiceRegistration<?> registration : registrations) {
+            registration.unregister();
+        }
+        registrations.clear();
+        scheduler.stop();
+        threadPool.stop();
+    }
+
+    /** Creates a server that uses, but does not start or stop, the shared resources. */
+    Server createServer() {
+        final Server server = new Server(threadPool);
+        server.unmanage(threadPool);
+        // Connectors and the session house keeper look these up as server beans.
+        server.addBean(scheduler, false);
+        server.addBean(byteBufferPool, false);
+        return server;
+    }
+
+    private void register(BundleContext context, String[] classes, Object service) {
+        final Dictionary<String, Object> dictionary = new Hashtable<>();
+        dictionary.put(Constants.SERVICE_VENDOR, "Eclipse.org"); // $NON-NLS-1$
+        dictionary.put(
+                Constants.SERVICE_DESCRIPTION,
+                "Equinox Jetty-based Http Service shared resource"); // $NON-NLS-1$
+        registrations.add(context.registerService(classes, service, dictionary));
+    }
+}
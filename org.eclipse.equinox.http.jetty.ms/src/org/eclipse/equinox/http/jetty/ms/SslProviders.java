@@ -0,0 +1,85 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.net.ssl.SSLContext;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * Chooses the security provider of the https connector among the configured ones. A provider is
+ * looked up by the name it is registered under; native providers that are not registered by
+ * default are installed from the class path when they are named. When none of them is available,
+ * the JDK's provider is used.
+ */
+final class SslProviders {
+
+    private static final Logger LOG = Log.getLogger(SslProviders.class);
+
+    /** The JDK's provider, also the fallback. */
+    static final String JDK = "SunJSSE"; // $NON-NLS-1$
+
+    /** Conscrypt, which does TLS with BoringSSL. */
+    static final String CONSCRYPT = "Conscrypt"; // $NON-NLS-1$
+
+    // Providers installed on demand, by the name they register under.
+    private static final Map<String, String> INSTALLABLE =
+            Collections.singletonMap(CONSCRYPT, "org.conscrypt.OpenSSLProvider"); // $NON-NLS-1$
+
+    private SslProviders() {}
+
+    /**
+     * Returns the name of the first of {@code candidates} that is available and implements {@code
+     * protocol}, or {@code null} for the JDK's default provider.
+     */
+    static String select(String[] candidates, String protocol) {
+        if (candidates == null) {
+            return null;
+        }
+        for (String candidate : candidates) {
+            final Provider provider = provider(candidate);
+            if (provider == null) {
+                LOG.info("Security provider {} is not available", candidate); // $NON-NLS-1$
+                continue;
+            }
+            try {
+                SSLContext.getInstance(protocol, provider);
+                return provider.getName();
+            } catch (NoSuchAlgorithmException e) {
+                LOG.info("{} does not implement {}", candidate, protocol); // $NON-NLS-1$
+            }
+        }
+        LOG.info("Using the default security provider for TLS"); // $NON-NLS-1$
+        return null;
+    }
+
+    private static synchronized Provider provider(String name) {
+        final Provider registered = Security.getProvider(name);
+        if (registered != null || !INSTALLABLE.containsKey(name)) {
+            return registered;
+        }
+        final Provider provider;
+        try {
+            provider =
+                    (Provider)
+                            Class.forName(
+                                            INSTALLABLE.get(name),
+                                            true,
+                                            SslProviders.class.getClassLoader())
+                                    .getConstructor()
+                                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Not on the class path, or without its native library for this platform.
+            LOG.debug(e);
+            return null;
+        }
+        // Last in line, so that it is only used where it is asked for by name.
+        Security.addProvider(provider);
+        return provider;
+    }
+}
@@ -0,0 +1,47 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durations of the phases of a server (re)start, in the order they ended. Phases that run
+ * concurrently overlap, so they may add up to more than the total.
+ */
+final class StartupTimer {
+
+    static final String TOTAL = "total"; // $NON-NLS-1$
+
+    private final long started = System.nanoTime();
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Records a phase that began at {@code since}, a {@link System#nanoTime()} value, and ends now.
+     */
+    synchronized void record(String phase, long since) {
+        phases.put(phase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since));
+    }
+
+    /** Records the total and returns the milliseconds of each phase. */
+    synchronized Map<String, Long> finish() {
+        record(TOTAL, started);
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phases));
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            if (text.length() > 0) {
+                text.append(", "); // $NON-NLS-1$
+            }
+            text.append(phase.getKey())
+                    .append(' ')
+                    .append(phase.getValue())
+                    .append("ms"); // $NON-NLS-1$
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,179 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * Moves the maximum size of a {@link BoundedThreadPool} within bounds, by the mean time its tasks
+ * waited in the queue during each period. The pool starts at the upper bound, which the connectors
+ * lease their threads from. It grows by a quarter as soon as the tasks wait longer than the
+ * target, and shrinks by an eighth only after a number of periods in a row in which they waited
+ * less than half the target while less than half the threads were busy, so that it does not
+ * oscillate around the target. The pool itself starts threads on demand up to its maximum and stops
+ * those that stay idle for its idle timeout.
+ */
+@ManagedObject("Adapts the size of the thread pool to the queue wait")
+class ThreadPoolTuner extends ContainerLifeCycle implements Runnable {
+
+    private static final Logger LOG = Log.getLogger(ThreadPoolTuner.class);
+
+    private final BoundedThreadPool pool;
+
+    private final long targetQueueWait;
+
+    private final long period;
+
+    private final int shrinkAfter;
+
+    private final Scheduler scheduler;
+
+    private final LongAdder grown = new LongAdder();
+
+    private final LongAdder shrunk = new LongAdder();
+
+    private int minThreads;
+
+    private int maxThreads;
+
+    // The counts of the pool at the end of the previous period.
+    private long lastQueueWait;
+
+    private long lastTimedTasks;
+
+    private volatile double queueWaitMean;
+
+    // Periods in a row the pool could have shrunk in.
+    private int quiet;
+
+    /**
+     * @param targetQueueWait the mean queue wait, in milliseconds, above which the pool grows
+     * @param period the milliseconds between two decisions
+     * @param shrinkAfter the quiet periods in a row after which the pool shrinks
+     */
+    ThreadPoolTuner(
+            BoundedThreadPool pool,
+            int minThreads,
+            int maxThreads,
+            long targetQueueWait,
+            long period,
+            int shrinkAfter) {
+        this.pool = pool;
+        this.targetQueueWait = TimeUnit.MILLISECONDS.toNanos(targetQueueWait);
+        this.period = period;
+        this.shrinkAfter = Math.max(1, shrinkAfter);
+        scheduler = new ScheduledExecutorScheduler(pool.getName() + "-tuner", true); // $NON-NLS-1$
+        addBean(scheduler);
+        setBounds(minThreads, maxThreads);
+    }
+
+    /**
+     * Sets the bounds of the maximum size, and moves the current one within them. That move is not
+     * counted as a decision of the tuner.
+     */
+    synchronized void setBounds(int minThreads, int maxThreads) {
+        this.minThreads = Math.min(minThreads, maxThreads);
+        this.maxThreads = maxThreads;
+        final int current = pool.getMaxThreads();
+        resize(Math.max(this.minThreads, Math.min(maxThreads, current)), current);
+    }
+
+    @ManagedAttribute("Times the pool grew")
+    public long getGrown() {
+        return grown.sum();
+    }
+
+    @ManagedAttribute("Times the pool shrank")
+    public long getShrunk() {
+        return shrunk.sum();
+    }
+
+    @ManagedAttribute("Mean queue wait of the last period, in milliseconds")
+    public double getQueueWaitMean() {
+        return queueWaitMean;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        lastQueueWait = pool.getQueueWait();
+        lastTimedTasks = pool.getTimedTasks();
+        quiet = 0;
+        scheduler.schedule(this, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        if (!isRunning()) {
+            return;
+        }
+        try {
+            tune();
+        } finally {
+            scheduler.schedule(this, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void tune() {
+        final long queueWait = pool.getQueueWait();
+        final long timedTasks = pool.getTimedTasks();
+        final long tasks = timedTasks - lastTimedTasks;
+        final long mean;
+        if (tasks > 0) {
+            mean = (queueWait - lastQueueWait) / tasks;
+        } else {
+            // No task left the queue, so the ones in it waited the whole period.
+            mean = pool.getQueueSize() > 0 ? TimeUnit.MILLISECONDS.toNanos(period) : 0;
+        }
+        lastQueueWait = queueWait;
+        lastTimedTasks = timedTasks;
+        queueWaitMean = mean / 1e6;
+
+        final int current = pool.getMaxThreads();
+        if (mean > targetQueueWait) {
+            quiet = 0;
+            if (current < maxThreads
+                    && resize(Math.min(maxThreads, current + Math.max(1, current / 4)), current)) {
+                grown.increment();
+            }
+        } else if (mean < targetQueueWait / 2 && pool.getBusyThreads() < current / 2) {
+            if (++quiet >= shrinkAfter
+                    && current > minThreads
+                    && resize(Math.max(minThreads, current - Math.max(1, current / 8)), current)) {
+                quiet = 0;
+                shrunk.increment();
+            }
+        } else {
+            quiet = 0;
+        }
+    }
+
+    private boolean resize(int size, int current) {
+        if (size == current) {
+            return false;
+        }
+        try {
+            pool.setMaxThreads(size);
+        } catch (IllegalStateException e) {
+            // The connectors need more threads than that.
+            LOG.ignore(e);
+            return false;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                    "Resized {} from {} to {} threads, mean queue wait {}ms", // $NON-NLS-1$
+                    pool.getName(),
+                    current,
+                    size,
+                    queueWaitMean);
+        }
+        return true;
+    }
+}
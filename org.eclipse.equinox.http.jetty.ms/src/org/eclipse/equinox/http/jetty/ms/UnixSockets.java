@@ -0,0 +1,88 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import jnr.constants.platform.Errno;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+
+/**
+ * Creates the connector that listens on a Unix domain socket. The jetty unixsocket bundle and the
+ * jnr-unixsocket library it uses are optional imports, so this class is only loaded once a socket
+ * path has been configured; callers go without the connector on a {@link LinkageError}.
+ */
+final class UnixSockets {
+
+    private UnixSockets() {}
+
+    /**
+     * Returns a connector for the socket at {@code path}, which it binds when it is started. A
+     * socket that a previous run left at the path is removed first; a socket some process still
+     * listens on, or any other kind of file, is kept and makes the bind fail.
+     */
+    static AbstractConnector newConnector(
+            Server server,
+            String path,
+            int selectors,
+            int acceptQueueSize,
+            ConnectionFactory... factories) {
+        final Path socket = Paths.get(path).toAbsolutePath();
+        final UnixSocketConnector connector =
+                new UnixSocketConnector(server, null, null, null, selectors, factories) {
+                    @Override
+                    public void open() throws IOException {
+                        // Not earlier: a connector this one replaces listens until just before.
+                        removeStale(socket);
+                        super.open();
+                    }
+                };
+        connector.setUnixSocket(socket.toString());
+        connector.setAcceptQueueSize(acceptQueueSize);
+        return connector;
+    }
+
+    /** Binds the socket of a connector from {@link #newConnector}. */
+    static void open(AbstractConnector connector) throws IOException {
+        ((UnixSocketConnector) connector).open();
+    }
+
+    /**
+     * Stops a connector from {@link #newConnector} accepting connections and removes its socket,
+     * so another connector can bind the path. Established connections stay open.
+     */
+    static void close(AbstractConnector connector) {
+        connector.shutdown();
+        ((UnixSocketConnector) connector).close();
+    }
+
+    private static void removeStale(Path socket) throws IOException {
+        if (!Files.exists(socket, LinkOption.NOFOLLOW_LINKS)
+                || Files.isRegularFile(socket, LinkOption.NOFOLLOW_LINKS)
+                || Files.isDirectory(socket, LinkOption.NOFOLLOW_LINKS)
+                || Files.isSymbolicLink(socket)) {
+            return;
+        }
+        try (UnixSocketChannel channel =
+                UnixSocketChannel.open(new UnixSocketAddress(socket.toFile()))) {
+            // Connected.
+        } catch (IOException e) {
+            // jnr-unixsocket only passes on the message of the error.
+            if (Errno.ECONNREFUSED.description().equals(e.getMessage())) {
+                // Nobody listens, the process that bound it is gone.
+                Files.delete(socket);
+                return;
+            }
+            throw e;
+        }
+        throw new IOException(socket + " is in use by another process"); // $NON-NLS-1$
+    }
+}
@@ -0,0 +1,93 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+/**
+ * Runs each task on a new virtual thread. The JDK executor is looked up reflectively so that the
+ * bundle still runs on JVMs without virtual threads.
+ */
+@ManagedObject("Executor that runs each task on a new virtual thread")
+class VirtualThreadExecutor extends AbstractLifeCycle implements Executor {
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger activeThreads = new AtomicInteger();
+
+    private final AtomicInteger maxActiveThreads = new AtomicInteger();
+
+    private final LongAdder tasks = new LongAdder();
+
+    private VirtualThreadExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /** Returns null if the JVM does not support virtual threads. */
+    static VirtualThreadExecutor newInstance() {
+        try {
+            final Method factory =
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); // $NON-NLS-1$
+            return new VirtualThreadExecutor((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Before Java 19, or a preview feature that is not enabled.
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(
+                () -> {
+                    final int active = activeThreads.incrementAndGet();
+                    maxActiveThreads.accumulateAndGet(active, Math::max);
+                    tasks.increment();
+                    try {
+                        task.run();
+                    } finally {
+                        activeThreads.decrementAndGet();
+                    }
+                });
+    }
+
+    @ManagedAttribute("number of virtual threads running a task")
+    public int getActiveThreads() {
+        return activeThreads.get();
+    }
+
+    @ManagedAttribute("highest number of virtual threads running at the same time")
+    public int getMaxActiveThreads() {
+        return maxActiveThreads.get();
+    }
+
+    @ManagedAttribute("number of tasks started")
+    public long getTasks() {
+        return tasks.sum();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        // Lets the running tasks complete.
+        executor.shutdown();
+        super.doStop();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s@%x{%s,active=%d,max=%d,tasks=%d}",
+                getClass().getSimpleName(),
+                hashCode(),
+                getState(),
+                getActiveThreads(),
+                getMaxActiveThreads(),
+                getTasks());
+    }
+}
@@ -0,0 +1,117 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * Sends synthetic requests through an in-process {@link LocalConnector} of a started server whose
+ * network connectors are not open yet, so that the code that handles them is compiled by the time
+ * the first client arrives. The mean latency of each tenth of the requests shows whether it
+ * converged.
+ */
+final class Warmup {
+
+    private static final Logger LOG = Log.getLogger(Warmup.class);
+
+    private static final int TENTHS = 10;
+
+    private final String[] requests;
+
+    private final int iterations;
+
+    private final long timeout;
+
+    /**
+     * @param requests the requests, as "METHOD /path" or "/path" for a GET
+     * @param iterations the times the requests are sent
+     * @param timeout the milliseconds after which the warm-up ends anyway
+     */
+    Warmup(String[] requests, int iterations, long timeout) {
+        this.requests = new String[requests.length];
+        for (int i = 0; i < requests.length; i++) {
+            final String request = requests[i].trim();
+            final int space = request.indexOf(' ');
+            final String method = space < 0 ? "GET" : request.substring(0, space); // $NON-NLS-1$
+            final String path = space < 0 ? request : request.substring(space + 1).trim();
+            this.requests[i] =
+                    method
+                            + ' '
+                            + path
+                            + " HTTP/1.1\r\n" // $NON-NLS-1$
+                            + "Host: localhost\r\n" // $NON-NLS-1$
+                            + "Content-Length: 0\r\n" // $NON-NLS-1$
+                            + "Connection: close\r\n\r\n"; // $NON-NLS-1$
+        }
+        this.iterations = iterations;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sends the requests through a connector that is added to {@code server} for the time being.
+     *
+     * @return the mean latency of each tenth of the requests sent, in milliseconds
+     */
+    List<Double> run(Server server, HttpConfiguration httpConfiguration) throws Exception {
+        final LocalConnector connector =
+                new LocalConnector(server, new HttpConnectionFactory(httpConfiguration));
+        connector.setName("warmup"); // $NON-NLS-1$
+        // Not managed by the started server.
+        server.addConnector(connector);
+        try {
+            connector.start();
+            return send(connector);
+        } finally {
+            server.removeConnector(connector);
+            connector.stop();
+        }
+    }
+
+    private List<Double> send(LocalConnector connector) throws Exception {
+        final int total = iterations * requests.length;
+        if (total <= 0) {
+            return Collections.emptyList();
+        }
+        final List<Double> latencies = new ArrayList<>(TENTHS);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long batch = 0;
+        int batched = 0;
+        int tenth = 0;
+        for (int sent = 0; sent < total; sent++) {
+            if ((long) sent * TENTHS / total != tenth) {
+                latencies.add(batch / 1e6 / batched);
+                batch = 0;
+                batched = 0;
+                tenth = (int) ((long) sent * TENTHS / total);
+            }
+            final long started = System.nanoTime();
+            if (started - deadline > 0) {
+                LOG.info("Warm-up timed out after {} requests", sent); // $NON-NLS-1$
+                break;
+            }
+            final String response =
+                    connector.getResponse(
+                            requests[sent % requests.length],
+                            deadline - started,
+                            TimeUnit.NANOSECONDS);
+            if (response == null) {
+                LOG.info("Warm-up timed out after {} requests", sent); // $NON-NLS-1$
+                break;
+            }
+            batch += System.nanoTime() - started;
+            batched++;
+        }
+        if (batched > 0) {
+            latencies.add(batch / 1e6 / batched);
+        }
+        return latencies;
+    }
+}
@@ -0,0 +1,224 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.SessionContext;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * Takes the writes of a session data store off the request thread. Storing a session only records
+ * a copy of its data; a writer thread passes what was recorded to the underlying store once per
+ * interval, so a session changed by several requests in between is written once. Loads look at the
+ * recorded data first, since it is the latest. A save the underlying store fails is kept and tried
+ * again the next round. Whatever is still recorded is written when the store stops.
+ */
+@ManagedObject("Session data store writing in the background")
+class WriteBehindSessionDataStore extends AbstractSessionDataStore {
+
+    private static final Logger LOG = Log.getLogger(WriteBehindSessionDataStore.class);
+
+    private final AbstractSessionDataStore store;
+
+    private final long interval;
+
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    // Held while writing, so that a delete can't be followed by the write of the deleted session.
+    private final Object writeLock = new Object();
+
+    private final LongAdder recorded = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    WriteBehindSessionDataStore(AbstractSessionDataStore store, long interval) {
+        this.store = store;
+        this.interval = interval;
+        addBean(store);
+    }
+
+    @ManagedAttribute("Sessions waiting to be written")
+    public int getPending() {
+        return pending.size();
+    }
+
+    @ManagedAttribute("Session saves recorded")
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    @ManagedAttribute("Session saves passed to the underlying store")
+    public long getWritten() {
+        return written.sum();
+    }
+
+    @Override
+    public void initialize(SessionContext context) throws Exception {
+        super.initialize(context);
+        store.initialize(context);
+    }
+
+    @Override
+    public boolean isPassivating() {
+        return store.isPassivating();
+    }
+
+    @Override
+    public SessionData newSessionData(
+            String id, long created, long accessed, long lastAccessed, long maxInactiveMs) {
+        return store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    @Override
+    public void doStore(String id, SessionData data, long lastSaveTime) {
+        // The underlying store has not seen the saves still waiting, so it gets the oldest time.
+        pending.merge(
+                id,
+                new Pending(copy(data), lastSaveTime, data.isDirty()),
+                (waiting, latest) ->
+                        new Pending(
+                                latest.data,
+                                waiting.lastSaveTime,
+                                waiting.dirty || latest.dirty));
+        recorded.increment();
+    }
+
+    @Override
+    public SessionData doLoad(String id) throws Exception {
+        final Pending waiting = pending.get(id);
+        return waiting != null ? copy(waiting.data) : store.doLoad(id);
+    }
+
+    /**
+     * Copies the attributes and metadata, so requests can go on changing the session while the
+     * writer thread reads what was saved.
+     */
+    private SessionData copy(SessionData data) {
+        final SessionData copy =
+                store.newSessionData(
+                        data.getId(),
+                        data.getCreated(),
+                        data.getAccessed(),
+                        data.getLastAccessed(),
+                        data.getMaxInactiveMs());
+        copy.copy(data);
+        return copy;
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception {
+        final Pending waiting = pending.get(id);
+        if (waiting != null) {
+            return !waiting.data.isExpiredAt(System.currentTimeMillis());
+        }
+        return store.exists(id);
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception {
+        synchronized (writeLock) {
+            final boolean waiting = pending.remove(id) != null;
+            return store.delete(id) || waiting;
+        }
+    }
+
+    @Override
+    public Set<String> doGetExpired(Set<String> candidates) {
+        final long now = System.currentTimeMillis();
+        final Set<String> expired = new HashSet<>(store.doGetExpired(candidates));
+        // Sessions that are only recorded so far are unknown to the underlying store.
+        expired.removeIf(
+                id -> {
+                    final Pending waiting = pending.get(id);
+                    return waiting != null && !waiting.data.isExpiredAt(now);
+                });
+        return expired;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        running = true;
+        writer =
+                new Thread(
+                        () -> {
+                            while (running) {
+                                LockSupport.parkNanos(
+                                        this, TimeUnit.MILLISECONDS.toNanos(interval));
+                                write();
+                            }
+                        },
+                        "equinox-jetty-sessions"); // $NON-NLS-1$
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        writer = null;
+        write();
+        super.doStop();
+    }
+
+    private void write() {
+        synchronized (writeLock) {
+            for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+                final String id = entry.getKey();
+                final Pending waiting = entry.getValue();
+                try {
+                    // The data was marked clean when the save was recorded, but some stores only
+                    // write the attributes of dirty data.
+                    if (waiting.dirty) {
+                        waiting.data.setDirty(true);
+                    }
+                    store.doStore(id, waiting.data, waiting.lastSaveTime);
+                    written.increment();
+                } catch (Exception e) {
+                    // Kept for the next round, so a transient failure does not lose the session.
+                    LOG.warn("Can't save session {}, retrying", id, e); // $NON-NLS-1$
+                    continue;
+                }
+                // Saved again while being written: keep the later save for the next round.
+                final long saved = System.currentTimeMillis();
+                pending.computeIfPresent(
+                        id,
+                        (key, latest) ->
+                                latest == waiting
+                                        ? null
+                                        : new Pending(latest.data, saved, latest.dirty));
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        final SessionData data;
+
+        final long lastSaveTime;
+
+        final boolean dirty;
+
+        Pending(SessionData data, long lastSaveTime, boolean dirty) {
+            this.data = data;
+            this.lastSaveTime = lastSaveTime;
+            this.dirty = dirty;
+        }
+    }
+}
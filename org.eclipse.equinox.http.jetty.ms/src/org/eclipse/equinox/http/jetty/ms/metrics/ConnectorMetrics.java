@@ -0,0 +1,24 @@
+package org.eclipse.equinox.http.jetty.ms.metrics;
+
+/**
+ * Connection counters of one connector.
+ *
+ * @since 1.6
+ */
+public interface ConnectorMetrics {
+
+    /** Returns the connector name: http, https or metrics. */
+    String getName();
+
+    /** Returns the number of open connections. */
+    long getConnections();
+
+    /** Returns the number of connections accepted since the server started. */
+    long getConnectionsTotal();
+
+    /** Returns the bytes received by closed connections. */
+    long getReceivedBytes();
+
+    /** Returns the bytes sent by closed connections. */
+    long getSentBytes();
+}
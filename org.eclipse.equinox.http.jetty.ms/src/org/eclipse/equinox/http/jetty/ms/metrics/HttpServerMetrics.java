@@ -0,0 +1,129 @@
+package org.eclipse.equinox.http.jetty.ms.metrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runtime numbers of one Jetty server, registered as a service while the server runs. All values
+ * are read from lock-free counters, so polling them does not contend with request threads.
+ *
+ * @since 1.6
+ */
+public interface HttpServerMetrics {
+
+    /** Service property with the PID of the configuration that runs the server. */
+    String SERVER_PID = "org.eclipse.equinox.http.jetty.pid"; // $NON-NLS-1$
+
+    /** Returns the number of threads in the pool. */
+    int getThreads();
+
+    /** Returns the number of threads running a task. */
+    int getBusyThreads();
+
+    /** Returns the number of threads waiting for a task. */
+    int getIdleThreads();
+
+    /** Returns the maximum size of the pool, or -1 if it is not bounded. */
+    int getMaxThreads();
+
+    /** Returns the number of tasks waiting for a thread, or -1 if the pool does not tell. */
+    int getQueueSize();
+
+    /** Returns the number of tasks rejected because the queue of the pool was full. */
+    long getTasksRejected();
+
+    /**
+     * Returns the number of times the adaptive pool changed its maximum size, or 0 if the pool is
+     * not adaptive.
+     *
+     * @param grown whether to count the times it grew rather than those it shrank
+     */
+    long getThreadPoolResizes(boolean grown);
+
+    /**
+     * Returns the mean time tasks waited for a thread in the last period of the adaptive pool, in
+     * milliseconds, or -1 if the pool is not adaptive.
+     */
+    double getQueueWaitMean();
+
+    /**
+     * Returns the number of virtual threads running a request, or -1 if requests do not run on
+     * virtual threads.
+     */
+    int getVirtualThreads();
+
+    /**
+     * Returns the highest number of virtual threads that ran requests at the same time, or -1 if
+     * requests do not run on virtual threads.
+     */
+    int getVirtualThreadsPeak();
+
+    /** Returns the number of virtual threads started to run a request. */
+    long getVirtualThreadsStarted();
+
+    /** Returns the connectors, including those that have been replaced by a live update. */
+    Collection<ConnectorMetrics> getConnectors();
+
+    /** Returns the number of requests since the server started. */
+    long getRequests();
+
+    /** Returns the number of requests being handled. */
+    int getRequestsActive();
+
+    /**
+     * Returns the number of responses of a status class.
+     *
+     * @param statusClass 1 to 5, for 1xx to 5xx
+     */
+    long getResponses(int statusClass);
+
+    /** Returns the number of response body bytes. */
+    long getResponsesBytes();
+
+    /** Returns the mean time to handle a request, in milliseconds. */
+    double getRequestTimeMean();
+
+    /** Returns the longest time to handle a request, in milliseconds. */
+    long getRequestTimeMax();
+
+    /** Returns the number of requests answered 503 because they waited too long for a thread. */
+    long getRequestsShed();
+
+    /** Returns the number of responses served from the response cache. */
+    long getResponseCacheHits();
+
+    /** Returns the number of requests for cached paths that ran the servlet. */
+    long getResponseCacheMisses();
+
+    /**
+     * Returns the number of responses evicted from the response cache because they expired, or to
+     * stay within its size.
+     */
+    long getResponseCacheEvictions();
+
+    /**
+     * Returns the number of log events the asynchronous log dropped because its buffer was full, or
+     * 0 if logging is synchronous. The log is shared by all servers.
+     */
+    long getLogEventsDropped();
+
+    /**
+     * Returns the latency distributions of the routes served by the Http Service, or an empty
+     * collection if they are not recorded.
+     */
+    Collection<RouteMetrics> getRoutes();
+
+    /**
+     * Returns how long each phase of the last (re)start of the server took, in milliseconds, in the
+     * order the phases ended. The {@code https} phase runs concurrently with {@code http} and
+     * {@code context}; {@code total} is the wall-clock time.
+     */
+    Map<String, Long> getStartupPhases();
+
+    /**
+     * Returns the mean latency, in milliseconds, of each tenth of the warm-up requests sent before
+     * the last (re)start opened the connectors, or an empty list if there was no warm-up.
+     */
+    List<Double> getWarmupLatencies();
+}
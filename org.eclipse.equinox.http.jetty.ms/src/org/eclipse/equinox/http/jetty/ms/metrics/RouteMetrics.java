@@ -0,0 +1,28 @@
+package org.eclipse.equinox.http.jetty.ms.metrics;
+
+/**
+ * Latency distribution of the requests to one route over the recent window. Values are in
+ * microseconds, with a relative error of at most 1/16.
+ *
+ * @since 1.6
+ */
+public interface RouteMetrics {
+
+    /** Returns the route: the leading path segments of the requests, or "other" for overflow. */
+    String getRoute();
+
+    /** Returns the number of requests in the window. */
+    long getCount();
+
+    /** Returns the summed latency of the requests in the window. */
+    long getTotal();
+
+    /**
+     * Returns the latency that {@code percentile} percent of the requests in the window did not
+     * exceed, for example 50, 99 or 99.9.
+     */
+    long getPercentile(double percentile);
+
+    /** Returns the highest latency in the window. */
+    long getMax();
+}
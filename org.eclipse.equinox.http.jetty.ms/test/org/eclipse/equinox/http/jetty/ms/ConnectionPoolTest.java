@@ -0,0 +1,146 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.h2.Driver;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.jdbc.DataSourceFactory;
+
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1"; // $NON-NLS-1$
+
+    private ConnectionPool pool;
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void reusesReturnedConnection() throws Exception {
+        pool = start(null, 2, 100);
+
+        final Connection first = pool.getConnection();
+        final Connection real = first.unwrap(Connection.class);
+        assertEquals(1, pool.getActive());
+        first.close();
+        assertTrue(first.isClosed());
+        assertFalse(real.isClosed());
+        assertEquals(1, pool.getIdle());
+
+        try (Connection second = pool.getConnection()) {
+            assertSame(real, second.unwrap(Connection.class));
+        }
+        assertEquals(1, pool.getOpened());
+    }
+
+    @Test
+    public void rollsBackReturnedTransaction() throws Exception {
+        pool = start(null, 1, 100);
+        try (Connection connection = pool.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS T (X INT)"); // $NON-NLS-1$
+            connection.setAutoCommit(false);
+            statement.execute("INSERT INTO T VALUES (1)"); // $NON-NLS-1$
+        }
+
+        try (Connection connection = pool.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM T")) { // $NON-NLS-1$
+            assertTrue(connection.getAutoCommit());
+            assertTrue(rows.next());
+            assertEquals(0, rows.getInt(1));
+        }
+    }
+
+    @Test
+    public void timesOutWhenAllConnectionsAreInUse() throws Exception {
+        pool = start(null, 1, 50);
+        try (Connection connection = pool.getConnection()) {
+            try {
+                pool.getConnection();
+                fail();
+            } catch (SQLException e) {
+                // Expected.
+            }
+        }
+        assertEquals(1, pool.getWaits());
+        assertEquals(0, pool.getActive());
+    }
+
+    @Test
+    public void closesConnectionsOfRemovedFactory() throws Exception {
+        final BundleContext context = mock(BundleContext.class);
+        when(context.createFilter(anyString())).thenReturn(mock(Filter.class));
+        @SuppressWarnings("unchecked")
+        final ServiceReference<DataSourceFactory> reference = mock(ServiceReference.class);
+        when(context.getServiceReferences((String) isNull(), anyString()))
+                .thenReturn(new ServiceReference<?>[] {reference});
+        final DataSourceFactory factory = mock(DataSourceFactory.class);
+        when(factory.createDriver(isNull())).thenReturn(new Driver());
+        when(context.getService(reference)).thenReturn(factory);
+        pool = start(context, 2, 100);
+
+        final Connection returned = pool.getConnection();
+        final Connection borrowed = pool.getConnection();
+        final Connection idle = returned.unwrap(Connection.class);
+        final Connection inUse = borrowed.unwrap(Connection.class);
+        returned.close();
+        final ArgumentCaptor<ServiceListener> listener =
+                ArgumentCaptor.forClass(ServiceListener.class);
+        verify(context).addServiceListener(listener.capture(), any());
+        listener.getValue().serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, reference));
+
+        assertTrue(idle.isClosed());
+        assertEquals(0, pool.getIdle());
+        borrowed.close();
+        assertTrue(inUse.isClosed());
+        assertEquals(0, pool.getIdle());
+        // Without the service, the driver comes from DriverManager.
+        try (Connection connection = pool.getConnection()) {
+            assertNotSame(inUse, connection.unwrap(Connection.class));
+        }
+        assertEquals(3, pool.getOpened());
+    }
+
+    private static ConnectionPool start(BundleContext context, int maxSize, long timeout)
+            throws Exception {
+        final ConnectionPool pool =
+                new ConnectionPool(
+                        context,
+                        context != null ? Driver.class.getName() : null,
+                        URL,
+                        new Properties(),
+                        maxSize,
+                        timeout);
+        pool.start();
+        return pool;
+    }
+}
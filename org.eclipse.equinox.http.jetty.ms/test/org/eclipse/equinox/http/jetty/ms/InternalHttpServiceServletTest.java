@@ -0,0 +1,154 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionEvent;
+
+import org.eclipse.equinox.http.servlet.HttpServiceServlet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InternalHttpServiceServletTest {
+
+    private final ClassLoader contextLoader =
+            new URLClassLoader(new URL[0], getClass().getClassLoader());
+
+    private final ClassLoader[] seen = new ClassLoader[1];
+
+    private ClassLoader before;
+
+    private HttpServiceServlet httpServiceServlet;
+
+    private Activator.InternalHttpServiceServlet servlet;
+
+    @Before
+    public void setUp() throws Exception {
+        before = Thread.currentThread().getContextClassLoader();
+        httpServiceServlet = mock(HttpServiceServlet.class);
+        servlet = new Activator.InternalHttpServiceServlet(httpServiceServlet);
+        final ServletContext context = mock(ServletContext.class);
+        when(context.getAttribute(Activator.INTERNAL_CONTEXT_CLASSLOADER))
+                .thenReturn(contextLoader);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        servlet.init(config);
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(before);
+    }
+
+    @Test
+    public void sessionDestroyedCallsServletInContext() {
+        doAnswer(invocation -> see()).when(httpServiceServlet).sessionDestroyed("s1");
+
+        servlet.sessionDestroyed(event("s1")); // $NON-NLS-1$
+
+        verify(httpServiceServlet).sessionDestroyed("s1"); // $NON-NLS-1$
+        assertSame(contextLoader, seen[0]);
+        assertSame(before, Thread.currentThread().getContextClassLoader());
+    }
+
+    @Test
+    public void sessionIdChangedPassesOldId() {
+        doAnswer(invocation -> see()).when(httpServiceServlet).sessionIdChanged("s1");
+
+        servlet.sessionIdChanged(event("s2"), "s1"); // $NON-NLS-1$ //$NON-NLS-2$
+
+        verify(httpServiceServlet).sessionIdChanged("s1"); // $NON-NLS-1$
+        assertSame(contextLoader, seen[0]);
+        assertSame(before, Thread.currentThread().getContextClassLoader());
+    }
+
+    @Test
+    public void sessionDestroyedThrowsAsThroughReflection() {
+        final IllegalStateException thrown = new IllegalStateException();
+        doThrow(thrown).when(httpServiceServlet).sessionDestroyed("s1");
+
+        final RuntimeException reflected = throughReflection("sessionDestroyed"); // $NON-NLS-1$
+        try {
+            servlet.sessionDestroyed(event("s1")); // $NON-NLS-1$
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(reflected.getClass(), e.getClass());
+            assertSame(reflected.getCause(), e.getCause());
+            assertSame(thrown, e.getCause());
+        }
+        assertSame(before, Thread.currentThread().getContextClassLoader());
+    }
+
+    @Test
+    public void sessionIdChangedThrowsErrorAsThroughReflection() {
+        final LinkageError thrown = new LinkageError();
+        doThrow(thrown).when(httpServiceServlet).sessionIdChanged("s1");
+
+        final RuntimeException reflected = throughReflection("sessionIdChanged"); // $NON-NLS-1$
+        try {
+            servlet.sessionIdChanged(event("s2"), "s1"); // $NON-NLS-1$ //$NON-NLS-2$
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(reflected.getClass(), e.getClass());
+            assertSame(reflected.getCause(), e.getCause());
+            assertSame(thrown, e.getCause());
+        }
+        assertSame(before, Thread.currentThread().getContextClassLoader());
+    }
+
+    @Test
+    public void serviceRunsInContext() throws Exception {
+        doAnswer(invocation -> see())
+                .when(httpServiceServlet)
+                .service(any(ServletRequest.class), any(ServletResponse.class));
+        final ServletRequest request = mock(ServletRequest.class);
+        final ServletResponse response = mock(ServletResponse.class);
+
+        servlet.service(request, response);
+
+        verify(httpServiceServlet).service(request, response);
+        assertSame(contextLoader, seen[0]);
+        assertSame(before, Thread.currentThread().getContextClassLoader());
+    }
+
+    private Object see() {
+        seen[0] = Thread.currentThread().getContextClassLoader();
+        return null;
+    }
+
+    private static HttpSessionEvent event(String id) {
+        final HttpSession session = mock(HttpSession.class);
+        when(session.getId()).thenReturn(id);
+        return new HttpSessionEvent(session);
+    }
+
+    /** Calls a session callback with id s1 the way the servlet did before it bound them. */
+    private RuntimeException throughReflection(String name) {
+        try {
+            final Method method = httpServiceServlet.getClass().getMethod(name, String.class);
+            method.invoke(httpServiceServlet, "s1"); // $NON-NLS-1$
+        } catch (InvocationTargetException e) {
+            return new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError(name + " did not throw"); // $NON-NLS-1$
+    }
+}
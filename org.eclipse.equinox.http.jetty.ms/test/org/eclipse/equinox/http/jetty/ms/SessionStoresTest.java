@@ -0,0 +1,142 @@
+package org.eclipse.equinox.http.jetty.ms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.session.Session;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.ConfigurationException;
+
+/** The jdbc session store on an in-memory H2 database that stands for a shared one. */
+public class SessionStoresTest {
+
+    private static final String PID = "org.eclipse.equinox.http.jetty.ms.test"; // $NON-NLS-1$
+
+    private final List<Server> servers = new ArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (Server server : servers) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void nodesShareSessions() throws Exception {
+        final Dictionary<String, Object> properties = jdbc("shared"); // $NON-NLS-1$
+        final SessionHandler one = start(properties);
+        final SessionHandler other = start(properties);
+
+        final Session created = one.getSessionCache().newSession(null, "s1", now(), -1);
+        one.getSessionCache().add("s1", created); // $NON-NLS-1$
+        created.setAttribute("counter", 1); // $NON-NLS-1$
+        one.complete(created);
+
+        final Session read = other.getSession("s1"); // $NON-NLS-1$
+        assertNotNull(read);
+        assertEquals(1, read.getAttribute("counter")); // $NON-NLS-1$
+        read.setAttribute("counter", 2); // $NON-NLS-1$
+        other.complete(read);
+
+        // Evicted when the request exits, so the first node reads it again.
+        final Session again = one.getSession("s1"); // $NON-NLS-1$
+        assertEquals(2, again.getAttribute("counter")); // $NON-NLS-1$
+        again.invalidate();
+        assertNull(other.getSession("s1")); // $NON-NLS-1$
+    }
+
+    @Test
+    public void columnsMapTheTable() throws Exception {
+        final Dictionary<String, Object> properties = jdbc("columns"); // $NON-NLS-1$
+        properties.put(JettyConstants.SESSION_JDBC_TABLE, "WEB_SESSIONS"); // $NON-NLS-1$
+        properties.put(
+                JettyConstants.SESSION_JDBC_COLUMNS,
+                "id=SESSION_ID,map=ATTRIBUTES"); // $NON-NLS-1$
+        final SessionHandler handler = start(properties);
+
+        final Session session = handler.getSessionCache().newSession(null, "s1", now(), -1);
+        handler.getSessionCache().add("s1", session); // $NON-NLS-1$
+        handler.complete(session);
+
+        try (Connection connection =
+                        DriverManager.getConnection(
+                                (String) properties.get(JettyConstants.SESSION_JDBC_URL));
+                Statement statement = connection.createStatement();
+                ResultSet rows =
+                        statement.executeQuery(
+                                "SELECT SESSION_ID, ATTRIBUTES FROM WEB_SESSIONS")) { // $NON-NLS-1$
+            assertTrue(rows.next());
+            assertEquals("s1", rows.getString(1)); // $NON-NLS-1$
+        }
+    }
+
+    @Test
+    public void unknownColumnIsRejected() throws Exception {
+        final Dictionary<String, Object> properties = jdbc("unknown"); // $NON-NLS-1$
+        properties.put(JettyConstants.SESSION_JDBC_COLUMNS, "owner=OWNER"); // $NON-NLS-1$
+        try {
+            start(properties);
+            fail();
+        } catch (ConfigurationException e) {
+            assertEquals(JettyConstants.SESSION_JDBC_COLUMNS, e.getProperty());
+        }
+    }
+
+    @Test
+    public void urlIsRequired() throws Exception {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(JettyConstants.SESSION_STORE, SessionStores.JDBC);
+        try {
+            start(properties);
+            fail();
+        } catch (ConfigurationException e) {
+            assertEquals(JettyConstants.SESSION_JDBC_URL, e.getProperty());
+        }
+    }
+
+    private static Dictionary<String, Object> jdbc(String database) {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(JettyConstants.SESSION_STORE, SessionStores.JDBC);
+        properties.put(
+                JettyConstants.SESSION_JDBC_URL,
+                "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1"); // $NON-NLS-1$ //$NON-NLS-2$
+        return properties;
+    }
+
+    /** Starts a node with the session store of {@code properties}. */
+    private SessionHandler start(Dictionary<String, ?> properties) throws Exception {
+        final SessionHandler handler = new SessionHandler();
+        handler.setSessionCache(
+                SessionStores.createSessionCache(
+                        mock(BundleContext.class), PID, properties, handler));
+        final ServletContextHandler context = new ServletContextHandler();
+        context.setSessionHandler(handler);
+        final Server server = new Server();
+        server.setHandler(context);
+        servers.add(server);
+        server.start();
+        return handler;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+}